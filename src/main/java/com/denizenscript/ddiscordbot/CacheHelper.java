@@ -1,15 +1,113 @@
 package com.denizenscript.ddiscordbot;
 
+import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class CacheHelper {
 
     public HashMap<Long, DiscordMessageCache> messageCaches = new HashMap<>();
 
+    /**
+     * Direct-message channels by user ID. The channel object stays usable for sending after JDA drops it (and the user) from its own cache,
+     * so a hit skips both looking up the user and re-opening the channel.
+     */
+    public final LinkedHashMap<Long, PrivateChannel> privateChannels = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PrivateChannel> eldest) {
+            return size() > DenizenDiscordBot.privateChannelCacheSize;
+        }
+    };
+
+    public long privateChannelHits = 0, privateChannelMisses = 0;
+
+    public record MemberKey(long guild, long user) {
+    }
+
+    public static class Retrieved<T> {
+
+        public final T value;
+
+        public final long time = System.currentTimeMillis();
+
+        public Retrieved(T value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * How long a member or user looked up from Discord (rather than from JDA's cache) is reused for, since JDA doesn't keep it updated.
+     */
+    public static long RETRIEVED_MILLIS = 60_000;
+
+    /**
+     * Members and users looked up from Discord, for bots that don't keep every member cached.
+     */
+    public final LinkedHashMap<MemberKey, Retrieved<Member>> retrievedMembers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MemberKey, Retrieved<Member>> eldest) {
+            return size() > DenizenDiscordBot.memberLookupCacheSize;
+        }
+    };
+
+    public final LinkedHashMap<Long, Retrieved<User>> retrievedUsers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Retrieved<User>> eldest) {
+            return size() > DenizenDiscordBot.memberLookupCacheSize;
+        }
+    };
+
+    public static <K, T> T getRetrieved(LinkedHashMap<K, Retrieved<T>> map, K key) {
+        synchronized (map) {
+            Retrieved<T> retrieved = map.get(key);
+            if (retrieved == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - retrieved.time > RETRIEVED_MILLIS) {
+                map.remove(key);
+                return null;
+            }
+            return retrieved.value;
+        }
+    }
+
+    public static <K, T> void addRetrieved(LinkedHashMap<K, Retrieved<T>> map, K key, T value) {
+        if (DenizenDiscordBot.memberLookupCacheSize < 1) {
+            return;
+        }
+        synchronized (map) {
+            map.put(key, new Retrieved<>(value));
+        }
+    }
+
+    public PrivateChannel getPrivateChannel(long user) {
+        synchronized (privateChannels) {
+            PrivateChannel channel = privateChannels.get(user);
+            if (channel == null) {
+                privateChannelMisses++;
+                return null;
+            }
+            privateChannelHits++;
+            return channel;
+        }
+    }
+
+    public void addPrivateChannel(long user, PrivateChannel channel) {
+        if (DenizenDiscordBot.privateChannelCacheSize < 1) {
+            return;
+        }
+        synchronized (privateChannels) {
+            privateChannels.put(user, channel);
+        }
+    }
+
     public Message getMessage(long channel, long message) {
         DiscordMessageCache cache = messageCaches.get(channel);
         if (cache == null) {
@@ -21,6 +119,9 @@ public class CacheHelper {
     public void onMessageReceived(MessageReceivedEvent event) {
         DiscordMessageCache cache = messageCaches.computeIfAbsent(event.getChannel().getIdLong(), k -> new DiscordMessageCache());
         cache.add(event.getMessage());
+        if (event.getChannel() instanceof PrivateChannel privateChannel && !event.getAuthor().isBot()) {
+            addPrivateChannel(event.getAuthor().getIdLong(), privateChannel);
+        }
     }
 
     public void onMessageUpdate(MessageUpdateEvent event) {
@@ -6,7 +6,9 @@ import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.ddiscordbot.properties.DiscordElementTagExtensions;
 import com.denizenscript.ddiscordbot.properties.DiscordTimeTagExtensions;
 import com.denizenscript.denizen.Denizen;
+import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
+import com.denizenscript.denizencore.objects.core.MapTag;
 import com.denizenscript.denizencore.utilities.debugging.*;
 import com.denizenscript.denizencore.DenizenCore;
 import com.denizenscript.denizencore.events.ScriptEvent;
@@ -39,6 +41,10 @@ public class DenizenDiscordBot extends JavaPlugin {
 
     public static int messageCacheSize = 128;
 
+    public static int privateChannelCacheSize = 1024;
+
+    public static int memberLookupCacheSize = 1024;
+
     @Override
     public void onEnable() {
         Debug.log("dDiscordBot loaded!");
@@ -48,22 +54,69 @@ public class DenizenDiscordBot extends JavaPlugin {
         if (config != null) {
             allowMessageRetrieval = config.getBoolean("Allow message lookup", true);
             messageCacheSize = config.getInt("Message cache size", 128);
+            privateChannelCacheSize = config.getInt("Private channel cache size", 1024);
+            memberLookupCacheSize = config.getInt("Member lookup cache size", 1024);
+            DiscordRestPolicy.retryAttempts = config.getInt("Request retry attempts", 3);
+            DiscordRestPolicy.retryBaseDelayMillis = config.getLong("Request retry base delay", 500);
+            DiscordRestPolicy.retryMaxDelayMillis = config.getLong("Request retry max delay", 10000);
+            DiscordRestPolicy.breakerThreshold = config.getInt("Circuit breaker threshold", 5);
+            DiscordRestPolicy.breakerOpenMillis = config.getLong("Circuit breaker open time", 30) * 1000;
+            DiscordThreadPools.callbackThreads = Math.max(1, config.getInt("Thread pools.Callback threads", 4));
+            DiscordThreadPools.rateLimitThreads = Math.max(1, config.getInt("Thread pools.Rate limit threads", 2));
+            DiscordThreadPools.gatewayThreads = Math.max(1, config.getInt("Thread pools.Gateway threads", 1));
+            DiscordThreadPools.useEventPool = config.getBoolean("Thread pools.Event pool", false);
+            DiscordThreadPools.eventThreads = Math.max(1, config.getInt("Thread pools.Event threads", 2));
+            DiscordFlagSaver.autosaveSeconds = config.getInt("Flag autosave interval", 60);
+            String flagStorage = config.getString("Flag storage", "single");
+            DiscordFlagStore.enabled = flagStorage.equalsIgnoreCase("sharded") || flagStorage.equalsIgnoreCase("log");
+            DiscordFlagStore.useLog = flagStorage.equalsIgnoreCase("log");
+            DiscordFlagExpiry.sweepSeconds = config.getInt("Flag expiry sweep interval", 30);
+            DiscordFlagStore.shardSpanMillis = Math.max(1, config.getLong("Flag shard days", 30)) * 24 * 60 * 60 * 1000;
+        }
+        if (DiscordFlagSaver.autosaveSeconds > 0) {
+            long ticks = DiscordFlagSaver.autosaveSeconds * 20L;
+            Bukkit.getScheduler().runTaskTimer(this, () -> {
+                for (DiscordConnection connection : connections.values()) {
+                    connection.flagSaver.save(true);
+                    if (connection.flagStore != null) {
+                        connection.flagStore.unloadIdle();
+                    }
+                }
+            }, ticks, ticks);
         }
+        if (DiscordFlagExpiry.sweepSeconds > 0) {
+            long ticks = DiscordFlagExpiry.sweepSeconds * 20L;
+            Bukkit.getScheduler().runTaskTimer(this, () -> {
+                for (DiscordConnection connection : connections.values()) {
+                    connection.flagExpiry.sweep();
+                }
+            }, ticks, ticks);
+        }
+        long interactionTicks = DiscordInteractionCache.TICK_MILLIS / 50;
+        Bukkit.getScheduler().runTaskTimer(this, () -> {
+            for (DiscordConnection connection : connections.values()) {
+                connection.interactions.tick();
+            }
+        }, interactionTicks, interactionTicks);
         try {
             // Commands
             DenizenCore.commandRegistry.registerCommand(DiscordBanCommand.class);
+            DenizenCore.commandRegistry.registerCommand(DiscordBulkCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordCommandCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordConnectCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordCreateChannelCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordCreateThreadCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordInteractionCommand.class);
+            DenizenCore.commandRegistry.registerCommand(DiscordMemberCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordMessageCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordModalCommand.class);
+            DenizenCore.commandRegistry.registerCommand(DiscordPurgeCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordReactCommand.class);
             DenizenCore.commandRegistry.registerCommand(DiscordTimeoutCommand.class);
             // Events
             ScriptEvent.registerScriptEvent(DiscordApplicationCommandScriptEvent.class);
+            ScriptEvent.registerScriptEvent(DiscordBotReadyScriptEvent.class);
             ScriptEvent.registerScriptEvent(DiscordButtonClickedScriptEvent.class);
             ScriptEvent.registerScriptEvent(DiscordChannelCreateScriptEvent.class);
             ScriptEvent.registerScriptEvent(DiscordChannelDeleteScriptEvent.class);
@@ -114,6 +167,32 @@ public class DenizenDiscordBot extends JavaPlugin {
                 return bots;
             });
 
+            // <--[tag]
+            // @attribute <discord_component_route_hits>
+            // @returns MapTag
+            // @plugin dDiscordBot
+            // @description
+            // Returns how often each button, selection, and modal ID switch in loaded scripts was matched, as a map of event name to a map of switch value to hit count,
+            // plus a "misses" key per event for components that matched no such switch.
+            // A hit is only counted when a script path with that switch value matched the event entirely, including its other switches.
+            // Only plain IDs and prefixes (like "shop_buy_*") are counted here. Other switch values are matched the normal way.
+            // Counts include events from every bot, and reset when scripts are reloaded.
+            // -->
+            TagManager.registerTagHandler(MapTag.class, "discord_component_route_hits", (attribute) -> {
+                MapTag result = new MapTag();
+                for (ScriptEvent event : ScriptEvent.events) {
+                    if (event instanceof DiscordScriptEvent discordEvent && discordEvent.componentRouter != null) {
+                        MapTag routes = new MapTag();
+                        for (DiscordComponentRouter.Route route : discordEvent.componentRouter.routes) {
+                            routes.putObject(route.prefix ? route.key + "*" : route.key, new ElementTag(route.hits));
+                        }
+                        routes.putObject("misses", new ElementTag(discordEvent.componentRouter.misses));
+                        result.putObject(event.getName(), routes);
+                    }
+                }
+                return result;
+            });
+
             // <--[tag]
             // @attribute <discord[<bot-id>]>
             // @returns DiscordBotTag
@@ -330,11 +409,10 @@ public class DenizenDiscordBot extends JavaPlugin {
     public void onDisable() {
         for (Map.Entry<String, DiscordConnection> connection : connections.entrySet()) {
             try {
+                connection.getValue().pauseBulkJobs();
                 if (connection.getValue().client != null) {
-                    if (connection.getValue().flags.modified) {
-                        connection.getValue().flags.saveToFile(DiscordConnectCommand.flagFilePathFor(connection.getKey()));
-                    }
-                    connection.getValue().client.shutdownNow();
+                    connection.getValue().flagSaver.saveAndClose(false);
+                    connection.getValue().shutdown(true);
                 }
             }
             catch (Throwable ex) {
@@ -342,7 +420,7 @@ public class DenizenDiscordBot extends JavaPlugin {
             }
         }
         connections.clear();
-        DiscordInteractionTag.interactionCache.clear();
+        DiscordThreadPools.shutdown();
         Bukkit.getServer().getScheduler().cancelTasks(this);
         HandlerList.unregisterAll(this);
         // To prevent issue with onDisable order, tell Denizen to shutdown NOW (it won't repeat itself).
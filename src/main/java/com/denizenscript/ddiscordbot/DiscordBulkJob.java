@@ -0,0 +1,316 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.objects.Argument;
+import com.denizenscript.denizencore.utilities.CoreUtilities;
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a single member action (role change, nickname, timeout) to a long list of members of one group,
+ * keeping only a bounded number of requests in flight so the group's rate limit bucket paces the job instead of the requester queue filling up.
+ * Progress is checkpointed to disk so a job can be resumed after a restart.
+ */
+public class DiscordBulkJob {
+
+    public enum Action { ADD_ROLE, REMOVE_ROLE, NICKNAME, TIMEOUT, REMOVE_TIMEOUT }
+
+    public enum Status { RUNNING, PAUSED, CANCELLED, FINISHED }
+
+    public static int CHECKPOINT_INTERVAL = 100;
+
+    public DiscordConnection connection;
+
+    public String name;
+
+    public long guildId;
+
+    public Action action;
+
+    public long roleId;
+
+    public String value;
+
+    public long durationSeconds;
+
+    public int concurrency;
+
+    public long[] users;
+
+    public BitSet done;
+
+    public int nextIndex = 0, inFlight = 0, succeeded = 0, failed = 0, sinceCheckpoint = 0;
+
+    /**
+     * Number of members already processed before this job was last loaded from a checkpoint.
+     */
+    public int previouslyCompleted = 0;
+
+    public Status status = Status.PAUSED;
+
+    public CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    /**
+     * The most recently queued checkpoint file operation. Writes and the final delete are chained so they always happen in order, one at a time.
+     */
+    public CompletableFuture<Void> pendingWrite = CompletableFuture.completedFuture(null);
+
+    public DiscordBulkJob(DiscordConnection connection, String name) {
+        this.connection = connection;
+        this.name = name;
+    }
+
+    public static String checkpointPathFor(String bot, String job) {
+        return DenizenDiscordBot.instance.getDataFolder().getPath() + "/bulk_jobs/" + Argument.prefixCharsAllowed.trimToMatches(CoreUtilities.toLowerCase(bot))
+                + "_" + Argument.prefixCharsAllowed.trimToMatches(CoreUtilities.toLowerCase(job)) + ".yml";
+    }
+
+    public File getCheckpointFile() {
+        return new File(checkpointPathFor(connection.botID, name));
+    }
+
+    /**
+     * Returns a description of why the job's group or role can't be used (eg it was deleted), or null if both are available.
+     */
+    public String getTargetError() {
+        Guild guild = connection.getGuildById(guildId);
+        if (guild == null) {
+            return "Unknown group " + guildId;
+        }
+        if ((action == Action.ADD_ROLE || action == Action.REMOVE_ROLE) && guild.getRoleById(roleId) == null) {
+            return "Unknown role " + roleId;
+        }
+        return null;
+    }
+
+    public RestAction<?> createAction(long user) {
+        Guild guild = connection.getGuildById(guildId);
+        if (guild == null) {
+            throw new IllegalStateException("Unknown group " + guildId);
+        }
+        UserSnowflake member = UserSnowflake.fromId(user);
+        switch (action) {
+            case ADD_ROLE:
+            case REMOVE_ROLE: {
+                Role role = guild.getRoleById(roleId);
+                if (role == null) {
+                    throw new IllegalStateException("Unknown role " + roleId);
+                }
+                return action == Action.ADD_ROLE ? guild.addRoleToMember(member, role) : guild.removeRoleFromMember(member, role);
+            }
+            case NICKNAME: {
+                Member cached = guild.getMemberById(user);
+                if (cached != null) {
+                    return cached.modifyNickname(value);
+                }
+                return guild.retrieveMemberById(user).flatMap(m -> m.modifyNickname(value));
+            }
+            case TIMEOUT:
+                return guild.timeoutFor(member, durationSeconds, TimeUnit.SECONDS);
+            case REMOVE_TIMEOUT:
+                return guild.removeTimeout(member);
+        }
+        throw new IllegalStateException("Unknown action " + action);
+    }
+
+    public synchronized int getCompleted() {
+        return succeeded + failed;
+    }
+
+    public synchronized int getTotal() {
+        return previouslyCompleted + users.length;
+    }
+
+    public synchronized void start() {
+        if (status == Status.CANCELLED || status == Status.FINISHED) {
+            return;
+        }
+        if (completion.isDone()) {
+            completion = new CompletableFuture<>();
+        }
+        status = Status.RUNNING;
+        pump();
+    }
+
+    public synchronized void pause() {
+        if (status != Status.RUNNING) {
+            return;
+        }
+        status = Status.PAUSED;
+        saveCheckpointAsync();
+    }
+
+    public synchronized void cancel() {
+        if (status == Status.CANCELLED || status == Status.FINISHED) {
+            return;
+        }
+        end(Status.CANCELLED);
+    }
+
+    /**
+     * Pauses the job (keeping its checkpoint) after an error that would fail every remaining member, such as the group or role being deleted.
+     */
+    public synchronized void stopWithError(String error) {
+        Debug.echoError("Bulk job '" + name + "' paused: " + error + ". Fix the problem and resume the job, or cancel it.");
+        pause();
+        completion.completeExceptionally(new IllegalStateException(error));
+    }
+
+    public synchronized void pump() {
+        if (status == Status.RUNNING && nextIndex < users.length) {
+            String error = getTargetError();
+            if (error != null) {
+                stopWithError(error);
+                return;
+            }
+        }
+        while (status == Status.RUNNING && inFlight < concurrency && nextIndex < users.length) {
+            int index = nextIndex++;
+            RestAction<?> request;
+            try {
+                request = createAction(users[index]);
+            }
+            catch (Throwable ex) {
+                Debug.echoError("Bulk job '" + name + "' failed for user " + users[index] + ": " + ex.getMessage());
+                done.set(index);
+                failed++;
+                continue;
+            }
+            inFlight++;
+            // Role changes, nicknames and timeouts are all idempotent, so can safely be retried.
+            DiscordCommandUtils.submit(connection, request, true).whenComplete((v, ex) -> onResult(index, ex == null));
+        }
+        if (status == Status.RUNNING && inFlight == 0 && nextIndex >= users.length) {
+            end(Status.FINISHED);
+        }
+    }
+
+    public synchronized void onResult(int index, boolean success) {
+        inFlight--;
+        done.set(index);
+        if (success) {
+            succeeded++;
+        }
+        else {
+            failed++;
+        }
+        if (++sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            sinceCheckpoint = 0;
+            saveCheckpointAsync();
+        }
+        pump();
+    }
+
+    public void end(Status endStatus) {
+        status = endStatus;
+        queueFileOperation(() -> getCheckpointFile().delete(), true);
+        completion.complete(null);
+    }
+
+    public synchronized String checkpointText() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("guild", String.valueOf(guildId));
+        config.set("action", action.name());
+        config.set("role", String.valueOf(roleId));
+        config.set("value", value);
+        config.set("duration", durationSeconds);
+        config.set("concurrency", concurrency);
+        config.set("succeeded", succeeded);
+        config.set("failed", failed);
+        StringBuilder remaining = new StringBuilder(users.length * 20);
+        for (int i = done.nextClearBit(0); i < users.length; i = done.nextClearBit(i + 1)) {
+            remaining.append(users[i]).append(',');
+        }
+        config.set("remaining", remaining.toString());
+        return config.saveToString();
+    }
+
+    public void saveCheckpointAsync() {
+        saveCheckpoint(true);
+    }
+
+    /**
+     * Snapshots the job's progress and writes it after any earlier checkpoint. If 'async' is false, waits for the write to finish.
+     */
+    public void saveCheckpoint(boolean async) {
+        String text = checkpointText();
+        queueFileOperation(() -> writeCheckpoint(text), async);
+    }
+
+    public void queueFileOperation(Runnable operation, boolean async) {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = pendingWrite.thenRunAsync(operation);
+            pendingWrite = next;
+        }
+        if (!async) {
+            next.join();
+        }
+    }
+
+    public void writeCheckpoint(String text) {
+        synchronized (this) {
+            if (status == Status.CANCELLED || status == Status.FINISHED) {
+                return;
+            }
+        }
+        try {
+            File file = getCheckpointFile();
+            file.getParentFile().mkdirs();
+            File temp = new File(file.getPath() + ".tmp");
+            Files.writeString(temp.toPath(), text, StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (Throwable ex) {
+            Debug.echoError(ex);
+        }
+    }
+
+    public static DiscordBulkJob loadCheckpoint(DiscordConnection connection, String name) {
+        File file = new File(checkpointPathFor(connection.botID, name));
+        if (!file.exists()) {
+            return null;
+        }
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        DiscordBulkJob job = new DiscordBulkJob(connection, name);
+        job.guildId = Long.parseLong(config.getString("guild", "0"));
+        job.action = Action.valueOf(config.getString("action"));
+        job.roleId = Long.parseLong(config.getString("role", "0"));
+        job.value = config.getString("value");
+        job.durationSeconds = config.getLong("duration");
+        job.concurrency = config.getInt("concurrency", 2);
+        job.succeeded = config.getInt("succeeded");
+        job.failed = config.getInt("failed");
+        job.previouslyCompleted = job.succeeded + job.failed;
+        List<Long> remaining = new ArrayList<>();
+        for (String id : CoreUtilities.split(config.getString("remaining", ""), ',')) {
+            if (!id.isEmpty()) {
+                remaining.add(Long.parseLong(id));
+            }
+        }
+        job.setUsers(remaining);
+        return job;
+    }
+
+    public void setUsers(List<Long> userIds) {
+        users = new long[userIds.size()];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = userIds.get(i);
+        }
+        done = new BitSet(users.length);
+    }
+}
@@ -4,10 +4,13 @@ import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.denizencore.exceptions.InvalidArgumentsRuntimeException;
 import com.denizenscript.denizencore.scripts.ScriptEntry;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.sharding.ShardManager;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DiscordCommandUtils {
 
@@ -72,19 +75,77 @@ public class DiscordCommandUtils {
         });
     }
 
+    /**
+     * The connection that owns each JDA client, or each shard manager for sharded bots. Filled in when a connection's handlers are registered, and cleared when it shuts down.
+     * Lookups only read this map, never the main thread's connection map, as they may run on JDA's threads.
+     */
+    public static final ConcurrentHashMap<Object, DiscordConnection> connectionsByClient = new ConcurrentHashMap<>();
+
+    public static boolean isOwner(DiscordConnection connection, JDA client, ShardManager shardManager) {
+        return connection.client == client || (shardManager != null && connection.shardManager == shardManager);
+    }
+
+    public static DiscordConnection getConnection(JDA client) {
+        ShardManager shardManager = client.getShardManager();
+        Object key = shardManager != null ? shardManager : client;
+        DiscordConnection cached = connectionsByClient.get(key);
+        if (cached != null && isOwner(cached, client, shardManager)) {
+            return cached;
+        }
+        return null;
+    }
+
+    public static void rememberConnection(DiscordConnection connection) {
+        if (connection.shardManager != null) {
+            connectionsByClient.put(connection.shardManager, connection);
+        }
+        else if (connection.client != null) {
+            connectionsByClient.put(connection.client, connection);
+        }
+    }
+
+    public static void forgetConnection(DiscordConnection connection) {
+        connectionsByClient.values().removeIf(c -> c == connection);
+    }
+
+    /**
+     * Submits the action through the owning bot's retry and circuit breaker policy, see {@link DiscordRestPolicy#submit}.
+     */
+    public static <T> CompletableFuture<T> submit(RestAction<T> action, boolean idempotent) {
+        return submit(getConnection(action.getJDA()), action, idempotent);
+    }
+
+    /**
+     * Submits the action through the given bot's retry and circuit breaker policy, or directly if the connection is null.
+     * Preferred over looking the connection up from the action's client when the caller already has it.
+     */
+    public static <T> CompletableFuture<T> submit(DiscordConnection connection, RestAction<T> action, boolean idempotent) {
+        if (connection == null) {
+            return action.submit();
+        }
+        return connection.restPolicy.submit(action, idempotent);
+    }
+
     public static void cleanWait(ScriptEntry scriptEntry, CompletableFuture<?> action) {
         action.exceptionally(t -> {
-            Debug.echoError(scriptEntry, t);
+            Debug.echoError(scriptEntry, DiscordRestPolicy.unwrap(t));
             scriptEntry.setFinished(true);
             return null;
         }).thenAccept((t) -> scriptEntry.setFinished(true));
     }
 
     public static void cleanWait(ScriptEntry scriptEntry, RestAction<?> action) {
+        cleanWait(scriptEntry, action, false);
+    }
+
+    /**
+     * Waits for the action, retrying it after transient failures if 'idempotent' is true (ie sending it twice has the same effect as sending it once).
+     */
+    public static void cleanWait(ScriptEntry scriptEntry, RestAction<?> action, boolean idempotent) {
         if (action == null) {
             scriptEntry.setFinished(true);
             return;
         }
-        cleanWait(scriptEntry, mapError(scriptEntry, action).submit());
+        cleanWait(scriptEntry, submit(action, idempotent));
     }
 }
@@ -0,0 +1,229 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.events.ScriptEvent;
+import com.denizenscript.denizencore.utilities.CoreUtilities;
+
+import java.util.*;
+
+/**
+ * An index of the script paths of a component event (button, selection, modal) by the custom ID switch they match,
+ * so that when the event fires, the paths for the ID are found by walking the ID once, rather than matching every path's switch in turn.
+ * Handles plain IDs (like "id:shop_open") and prefixes (like "id:shop_buy_*"), including lists of either (like "id:yes|no").
+ * Any other switch (regex, negation, wildcards elsewhere) is left to the normal switch matcher.
+ */
+public class DiscordComponentRouter {
+
+    public static class Route {
+
+        public final String key;
+
+        public final boolean prefix;
+
+        public final List<ScriptEvent.ScriptPath> paths = new ArrayList<>();
+
+        /**
+         * How many times a path using this route went on to match every other switch too, see {@link #countMatch}.
+         */
+        public long hits = 0;
+
+        public Route(String key, boolean prefix) {
+            this.key = key;
+            this.prefix = prefix;
+        }
+    }
+
+    public static class Node {
+
+        public HashMap<Character, Node> children;
+
+        public Route exact, prefix;
+    }
+
+    public final String switchName;
+
+    public Node root = new Node();
+
+    public final List<Route> routes = new ArrayList<>();
+
+    /**
+     * Paths whose switch is fully handled by the index.
+     */
+    public final Set<ScriptEvent.ScriptPath> routed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Every path the index was built from, routed or not. Denizen reloads scripts by refilling the same path list,
+     * so a path missing from here means the index is out of date, even if the list and its size are unchanged.
+     */
+    public final Set<ScriptEvent.ScriptPath> indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The routed paths matching the ID currently being fired.
+     */
+    public final Set<ScriptEvent.ScriptPath> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The routes matching the ID currently being fired.
+     */
+    public final List<Route> matchedRoutes = new ArrayList<>();
+
+    public List<ScriptEvent.ScriptPath> builtFor;
+
+    public int builtSize = -1;
+
+    public long misses = 0;
+
+    public DiscordComponentRouter(String switchName) {
+        this.switchName = switchName;
+    }
+
+    public void invalidate() {
+        builtFor = null;
+    }
+
+    public boolean isStale(List<ScriptEvent.ScriptPath> paths) {
+        if (builtFor != paths || builtSize != paths.size()) {
+            return true;
+        }
+        for (ScriptEvent.ScriptPath path : paths) {
+            if (!indexed.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the switch value is only plain text, optionally ending in a single '*'.
+     */
+    public static boolean isRoutable(String value) {
+        if (value.isEmpty() || CoreUtilities.toLowerCase(value).startsWith("regex:")) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' && i == value.length() - 1 && i > 0) {
+                continue;
+            }
+            if (c == '*' || c == '!' || c == '&' || c == '|' || c == '^' || c == '(' || c == ')' || c == '[' || c == ']') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Node nodeFor(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            if (node.children == null) {
+                node.children = new HashMap<>();
+            }
+            node = node.children.computeIfAbsent(key.charAt(i), k -> new Node());
+        }
+        return node;
+    }
+
+    public void build(List<ScriptEvent.ScriptPath> paths) {
+        root = new Node();
+        routes.clear();
+        routed.clear();
+        indexed.clear();
+        misses = 0;
+        for (ScriptEvent.ScriptPath path : paths) {
+            indexed.add(path);
+            String value = path.switches.get(switchName);
+            if (value == null) {
+                continue;
+            }
+            List<String> options = CoreUtilities.split(value, '|');
+            boolean routable = true;
+            for (String option : options) {
+                routable = routable && isRoutable(option);
+            }
+            if (!routable) {
+                continue;
+            }
+            for (String option : options) {
+                boolean prefix = option.endsWith("*");
+                String key = CoreUtilities.toLowerCase(prefix ? option.substring(0, option.length() - 1) : option);
+                Node node = nodeFor(key);
+                Route route = prefix ? node.prefix : node.exact;
+                if (route == null) {
+                    route = new Route(key, prefix);
+                    routes.add(route);
+                    if (prefix) {
+                        node.prefix = route;
+                    }
+                    else {
+                        node.exact = route;
+                    }
+                }
+                if (!route.paths.contains(path)) {
+                    route.paths.add(path);
+                }
+            }
+            routed.add(path);
+        }
+        builtFor = paths;
+        builtSize = paths.size();
+    }
+
+    public void addRoute(Route route) {
+        if (route != null) {
+            candidates.addAll(route.paths);
+            matchedRoutes.add(route);
+        }
+    }
+
+    /**
+     * Called once a path has matched the event entirely (not just its ID switch), to count a hit for the routes it matched through.
+     */
+    public void countMatch(ScriptEvent.ScriptPath path) {
+        if (!candidates.contains(path)) {
+            return;
+        }
+        for (Route route : matchedRoutes) {
+            if (route.paths.contains(path)) {
+                route.hits++;
+            }
+        }
+    }
+
+    /**
+     * Finds the routed paths for the given ID, ready for {@link #allows}. Rebuilds the index first if the event's paths changed.
+     */
+    public void route(List<ScriptEvent.ScriptPath> paths, String id) {
+        if (isStale(paths)) {
+            build(paths);
+        }
+        candidates.clear();
+        matchedRoutes.clear();
+        if (id == null || routes.isEmpty()) {
+            return;
+        }
+        // Folded the same way as the keys in build, and as the normal switch matcher does.
+        String key = CoreUtilities.toLowerCase(id);
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            addRoute(node.prefix);
+            node = node.children == null ? null : node.children.get(key.charAt(i));
+        }
+        if (node != null) {
+            addRoute(node.prefix);
+            addRoute(node.exact);
+        }
+        if (candidates.isEmpty()) {
+            misses++;
+        }
+    }
+
+    public boolean isRouted(ScriptEvent.ScriptPath path) {
+        return routed.contains(path);
+    }
+
+    /**
+     * Returns whether a routed path matches the ID last given to {@link #route}.
+     */
+    public boolean allows(ScriptEvent.ScriptPath path) {
+        return candidates.contains(path);
+    }
+}
@@ -1,12 +1,19 @@
 package com.denizenscript.ddiscordbot;
 
+import com.denizenscript.ddiscordbot.commands.DiscordConnectCommand;
 import com.denizenscript.ddiscordbot.events.*;
+import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.SavableMapFlagTracker;
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.events.channel.ChannelCreateEvent;
 import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
@@ -28,22 +35,176 @@ import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
 import net.dv8tion.jda.api.events.message.react.MessageReactionRemoveEvent;
 import net.dv8tion.jda.api.events.thread.ThreadHiddenEvent;
 import net.dv8tion.jda.api.events.thread.ThreadRevealedEvent;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import org.bukkit.Bukkit;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class DiscordConnection extends ListenerAdapter {
 
     public String botID;
 
+    /**
+     * The JDA instance, or when connected with shards, the first shard (which receives direct messages, and can be used for anything not specific to a group).
+     * For group-related lookups, use the helper methods here (like {@link #getGuildById}) which check every shard.
+     */
     public JDA client;
 
+    /**
+     * The shard manager, if the bot was connected with shards, otherwise null.
+     */
+    public ShardManager shardManager;
+
+    /**
+     * The options the bot was connected with, kept so the bot can reconnect itself when needed.
+     */
+    public DiscordConnectCommand.ConnectOptions connectOptions;
+
+    /**
+     * The group and channel filter given when connecting, or null if everything is allowed.
+     */
+    public DiscordEventFilter eventFilter;
+
+    public static class ShardStats {
+
+        public final LongAdder events = new LongAdder();
+
+        public long lastSampleTime = System.currentTimeMillis(), lastSampleEvents = 0;
+
+        public double eventRate = 0;
+
+        /**
+         * Returns the events per second since the previous sample, taking a new sample only if at least a second has passed.
+         */
+        public synchronized double sampleEventRate() {
+            long now = System.currentTimeMillis();
+            if (now - lastSampleTime >= 1000) {
+                long total = events.sum();
+                eventRate = (total - lastSampleEvents) * 1000.0 / (now - lastSampleTime);
+                lastSampleEvents = total;
+                lastSampleTime = now;
+            }
+            return eventRate;
+        }
+    }
+
+    public final ConcurrentHashMap<Integer, ShardStats> shardStats = new ConcurrentHashMap<>();
+
     public SavableMapFlagTracker flags;
 
+    /**
+     * Completes once the bot has finished connecting (including member chunking) and its flags are loaded, or completes exceptionally if connecting failed.
+     */
+    public CompletableFuture<DiscordConnection> ready = new CompletableFuture<>();
+
     public CacheHelper cache = new CacheHelper();
 
+    public DiscordEditDebouncer editDebouncer = new DiscordEditDebouncer(this);
+
+    public DiscordWebhookCache webhookCache = new DiscordWebhookCache(this);
+
+    public DiscordRestPolicy restPolicy = new DiscordRestPolicy(this);
+
+    public DiscordFlagSaver flagSaver = new DiscordFlagSaver(this);
+
+    /**
+     * The sharded storage for Discord object flags, or null if they are kept in the main flag file.
+     */
+    public DiscordFlagStore flagStore;
+
+    public DiscordFlagExpiry flagExpiry = new DiscordFlagExpiry(this);
+
+    public DiscordInteractionCache interactions = new DiscordInteractionCache();
+
+    public final DiscordObjectFlagTracker[][] flagTrackerCache = new DiscordObjectFlagTracker[DiscordFlagStore.Namespace.values().length][DiscordObjectFlagTracker.CACHE_SIZE];
+
+    /**
+     * Returns the flag tracker for a Discord object, given its namespace, the ID that decides its shard, and its full flag path.
+     */
+    public AbstractFlagTracker getFlagTracker(DiscordFlagStore.Namespace namespace, long id, String path) {
+        return createFlagTracker(namespace, 0, id, path);
+    }
+
+    /**
+     * Returns the flag tracker for a Discord object with a single ID (like a user), or an ID within a parent (like a message within a channel),
+     * reusing a cached tracker when possible. The parent is ignored for namespaces that don't have one.
+     */
+    public AbstractFlagTracker getFlagTracker(DiscordFlagStore.Namespace namespace, long parent, long id) {
+        if (namespace.depth == 1) {
+            parent = 0;
+        }
+        DiscordObjectFlagTracker[] cache = flagTrackerCache[namespace.ordinal()];
+        int slot = DiscordObjectFlagTracker.slotFor(id);
+        DiscordObjectFlagTracker tracker = cache[slot];
+        if (tracker != null) {
+            if (!tracker.isCurrent(this)) {
+                cache[slot] = null;
+            }
+            else if (tracker.id == id && tracker.parent == parent) {
+                if (tracker.shard != null) {
+                    tracker.shard.lastAccess = System.currentTimeMillis();
+                }
+                return tracker;
+            }
+        }
+        String path = namespace.depth == 1 ? namespace.key + "." + id : namespace.key + "." + parent + "." + id;
+        tracker = createFlagTracker(namespace, parent, id, path);
+        if (tracker.root != null) {
+            cache[slot] = tracker;
+        }
+        return tracker;
+    }
+
+    /**
+     * Clears cached trackers that point at unloaded shards, so the cache doesn't keep the shards' flags in memory.
+     */
+    public void forgetStaleFlagTrackers() {
+        for (DiscordObjectFlagTracker[] cache : flagTrackerCache) {
+            for (int i = 0; i < cache.length; i++) {
+                if (cache[i] != null && !cache[i].isCurrent(this)) {
+                    cache[i] = null;
+                }
+            }
+        }
+    }
+
+    public DiscordObjectFlagTracker createFlagTracker(DiscordFlagStore.Namespace namespace, long parent, long id, String path) {
+        DiscordFlagStore.Shard shard = flagStore != null ? flagStore.getShard(namespace, id) : null;
+        AbstractFlagTracker root = shard != null ? shard.flags : flags;
+        DiscordFlagExpiry expiry = DiscordFlagExpiry.indexedNamespaces.contains(namespace) ? flagExpiry : null;
+        return new DiscordObjectFlagTracker(root, shard, path, namespace, parent, id, expiry);
+    }
+
+    public HashMap<String, DiscordBulkJob> bulkJobs = new HashMap<>();
+
+    public void pauseBulkJobs() {
+        for (DiscordBulkJob job : bulkJobs.values()) {
+            boolean paused = false;
+            synchronized (job) {
+                if (job.status == DiscordBulkJob.Status.RUNNING) {
+                    job.status = DiscordBulkJob.Status.PAUSED;
+                    paused = true;
+                }
+            }
+            // Outside the lock, as the write itself locks the job to check its status.
+            if (paused) {
+                job.saveCheckpoint(false);
+            }
+        }
+    }
+
     public Message getMessage(long channel, long message) {
         Message result = cache.getMessage(channel, message);
         if (result != null) {
@@ -59,12 +220,149 @@ public class DiscordConnection extends ListenerAdapter {
         return ((MessageChannel) chan).retrieveMessageById(message).complete();
     }
 
+    /**
+     * Returns the member from JDA's member cache, or from members recently looked up by {@link #retrieveMember}.
+     * Returns null if the member isn't known, which (depending on the bot's member cache mode) doesn't always mean they aren't in the group.
+     * Never makes a request, so is safe to use from tags.
+     */
+    public Member getMember(Guild guild, long user) {
+        Member result = guild.getMemberById(user);
+        if (result != null) {
+            return result;
+        }
+        return CacheHelper.getRetrieved(cache.retrievedMembers, new CacheHelper.MemberKey(guild.getIdLong(), user));
+    }
+
+    /**
+     * Returns the member if known (see {@link #getMember}), or otherwise looks them up from Discord, and remembers them for a short while
+     * so that tags can see them. Completes with null if the user isn't a member of the group.
+     */
+    public CompletableFuture<Member> retrieveMember(Guild guild, long user) {
+        Member known = getMember(guild, user);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        CacheHelper.MemberKey key = new CacheHelper.MemberKey(guild.getIdLong(), user);
+        return DiscordCommandUtils.submit(this, guild.retrieveMemberById(user), true).handle((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = DiscordRestPolicy.unwrap(ex);
+                if (cause instanceof ErrorResponseException response && (response.getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER || response.getErrorResponse() == ErrorResponse.UNKNOWN_USER)) {
+                    return null;
+                }
+                throw new CompletionException(cause);
+            }
+            CacheHelper.addRetrieved(cache.retrievedMembers, key, result);
+            CacheHelper.addRetrieved(cache.retrievedUsers, user, result.getUser());
+            return result;
+        });
+    }
+
+    /**
+     * Returns the user from JDA's cache, or from users recently looked up by {@link #retrieveMember}. Never makes a request.
+     */
+    public User getCachedUser(long id) {
+        User result = getUserById(id);
+        if (result != null) {
+            return result;
+        }
+        return CacheHelper.getRetrieved(cache.retrievedUsers, id);
+    }
+
+    /**
+     * Opens a direct-message channel with the user, reusing a remembered channel (from an earlier DM either way) without any request.
+     * Otherwise the user is looked up if JDA doesn't have them cached, and the channel is opened on the user's own shard.
+     */
+    public CompletableFuture<PrivateChannel> openPrivateChannel(long userId) {
+        PrivateChannel cached = cache.getPrivateChannel(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        User user = getUserById(userId);
+        CompletableFuture<User> userFuture = user != null ? CompletableFuture.completedFuture(user)
+                : DiscordCommandUtils.submit(this, shardManager != null ? shardManager.retrieveUserById(userId) : client.retrieveUserById(userId), true);
+        return userFuture.thenCompose(u -> DiscordCommandUtils.submit(this, u.openPrivateChannel(), true)).thenApply(opened -> {
+            cache.addPrivateChannel(userId, opened);
+            return opened;
+        });
+    }
+
     public void registerHandlers() {
-        client.addEventListener(this);
+        DiscordCommandUtils.rememberConnection(this);
+        if (shardManager != null) {
+            shardManager.addEventListener(this);
+        }
+        else {
+            client.addEventListener(this);
+        }
+    }
+
+    public void shutdown(boolean now) {
+        if (shardManager != null) {
+            if (now) {
+                shardManager.shutdownNow();
+            }
+            else {
+                shardManager.shutdown();
+            }
+        }
+        else if (client != null) {
+            if (now) {
+                client.shutdownNow();
+            }
+            else {
+                client.shutdown();
+            }
+        }
+        interactions.clear();
+        editDebouncer.shutdown();
+        DiscordCommandUtils.forgetConnection(this);
+    }
+
+    public List<JDA> getShards() {
+        if (shardManager != null) {
+            return shardManager.getShardCache().asList();
+        }
+        return client == null ? Collections.emptyList() : Collections.singletonList(client);
+    }
+
+    /**
+     * Returns the first non-null result of the getter from any shard (or from the only client, when not sharded).
+     */
+    public <T> T fromShards(Function<JDA, T> getter) {
+        if (shardManager == null) {
+            return getter.apply(client);
+        }
+        for (JDA shard : shardManager.getShardCache()) {
+            T result = getter.apply(shard);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public Guild getGuildById(long id) {
+        return fromShards(shard -> shard.getGuildById(id));
+    }
+
+    public User getUserById(long id) {
+        return fromShards(shard -> shard.getUserById(id));
+    }
+
+    public List<Guild> getGuilds() {
+        if (shardManager == null) {
+            return client.getGuilds();
+        }
+        return shardManager.getGuilds();
+    }
+
+    @Override
+    public void onGenericEvent(@Nonnull GenericEvent event) {
+        shardStats.computeIfAbsent(event.getJDA().getShardInfo().getShardId(), id -> new ShardStats()).events.increment();
     }
 
     public Channel getChannel(long id) {
-        Channel result = client.getGuildChannelById(id);
+        Channel result = fromShards(shard -> shard.getGuildChannelById(id));
         if (result != null) {
             return result;
         }
@@ -87,15 +385,21 @@ public class DiscordConnection extends ListenerAdapter {
 
     @Override
     public void onMessageReceived(MessageReceivedEvent event) {
+        if (eventFilter != null && !eventFilter.allows(event)) {
+            return;
+        }
         cache.onMessageReceived(event);
-        autoHandle(event, DiscordMessageReceivedScriptEvent.instance);
+        fireOnMainThread(event, DiscordMessageReceivedScriptEvent.instance, null);
     }
 
     @Override
     public void onMessageUpdate(MessageUpdateEvent event) {
+        if (eventFilter != null && !eventFilter.allows(event)) {
+            return;
+        }
         Message oldMessage = cache.getMessage(event.getChannel().getIdLong(), event.getMessageIdLong());
         cache.onMessageUpdate(event);
-        autoHandle(event, DiscordMessageModifiedScriptEvent.instance, (e) -> {
+        fireOnMainThread(event, DiscordMessageModifiedScriptEvent.instance, (e) -> {
             e.oldMessage = oldMessage;
         });
     }
@@ -103,6 +407,8 @@ public class DiscordConnection extends ListenerAdapter {
     @Override
     public void onMessageDelete(MessageDeleteEvent event) {
         autoHandle(event, DiscordMessageDeletedScriptEvent.instance);
+        // Queued after the script event, so scripts can still read the message's flags.
+        Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> flagExpiry.purgeMessage(event.getChannel().getIdLong(), event.getMessageIdLong()));
     }
 
     @Override
@@ -172,7 +478,9 @@ public class DiscordConnection extends ListenerAdapter {
 
     @Override
     public void onChannelDelete(@Nonnull ChannelDeleteEvent event) {
+        webhookCache.remove(event.getChannel().getIdLong());
         autoHandle(event, DiscordChannelDeleteScriptEvent.instance);
+        Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> flagExpiry.purgeChannel(event.getChannel().getIdLong()));
     }
 
     @Override
@@ -190,6 +498,16 @@ public class DiscordConnection extends ListenerAdapter {
     }
 
     public <T extends DiscordScriptEvent> void autoHandle(Event event, T scriptEvent, Consumer<T> configure) {
+        if (eventFilter != null && !eventFilter.allows(event)) {
+            return;
+        }
+        fireOnMainThread(event, scriptEvent, configure);
+    }
+
+    /**
+     * Fires the script event on the main thread, for an event that has already passed the bot's event filter.
+     */
+    public <T extends DiscordScriptEvent> void fireOnMainThread(Event event, T scriptEvent, Consumer<T> configure) {
         Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> {
             if (!scriptEvent.eventData.isEnabled) {
                 return;
@@ -200,6 +518,7 @@ public class DiscordConnection extends ListenerAdapter {
             scriptEvent.botID = botID;
             scriptEvent.event = event;
             scriptEvent.cancelled = false;
+            scriptEvent.beforeFire();
             scriptEvent.fire();
         });
     }
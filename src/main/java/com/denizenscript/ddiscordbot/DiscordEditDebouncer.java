@@ -0,0 +1,133 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.ddiscordbot.objects.DiscordMessageTag;
+import com.denizenscript.denizencore.scripts.ScriptEntry;
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Coalesces rapid edits to the same message: the first edit is sent immediately, and any edits that arrive within the interval
+ * after it are collapsed so that only the most recent content is sent when the interval ends.
+ */
+public class DiscordEditDebouncer {
+
+    public static class PendingEdit {
+
+        public long messageId;
+
+        public long intervalTicks;
+
+        public MessageChannel channel;
+
+        public MessageEditData data;
+
+        public List<ScriptEntry> waiting = new ArrayList<>();
+    }
+
+    public DiscordConnection connection;
+
+    public final HashMap<Long, PendingEdit> pendingEdits = new HashMap<>();
+
+    /**
+     * Set once the bot disconnects, after which edits fail rather than waiting for a flush that will never come.
+     */
+    public boolean closed = false;
+
+    public DiscordEditDebouncer(DiscordConnection connection) {
+        this.connection = connection;
+    }
+
+    public void submit(ScriptEntry scriptEntry, MessageChannel channel, long messageId, MessageEditData data, long intervalTicks) {
+        PendingEdit sendNow = null;
+        synchronized (pendingEdits) {
+            if (closed) {
+                Debug.echoError(scriptEntry, "Cannot edit message: the Discord bot '" + connection.botID + "' has disconnected.");
+                scriptEntry.setFinished(true);
+                return;
+            }
+            PendingEdit edit = pendingEdits.get(messageId);
+            if (edit == null) {
+                edit = new PendingEdit();
+                edit.messageId = messageId;
+                pendingEdits.put(messageId, edit);
+                sendNow = edit;
+            }
+            edit.channel = channel;
+            edit.intervalTicks = Math.max(1, intervalTicks);
+            edit.data = data;
+            edit.waiting.add(scriptEntry);
+        }
+        if (sendNow != null) {
+            flush(sendNow);
+        }
+    }
+
+    public void flush(PendingEdit edit) {
+        MessageEditData data;
+        List<ScriptEntry> waiting;
+        synchronized (pendingEdits) {
+            if (edit.data == null) {
+                pendingEdits.remove(edit.messageId);
+                return;
+            }
+            data = edit.data;
+            waiting = edit.waiting;
+            edit.data = null;
+            edit.waiting = new ArrayList<>();
+        }
+        if (DenizenDiscordBot.instance.isEnabled()) {
+            Bukkit.getScheduler().runTaskLater(DenizenDiscordBot.instance, () -> flush(edit), edit.intervalTicks);
+        }
+        else {
+            // No more ticks are coming, so there's no interval to wait for: anything submitted after this fails in shutdown().
+            synchronized (pendingEdits) {
+                pendingEdits.remove(edit.messageId);
+            }
+        }
+        MessageChannel channel = edit.channel;
+        JDA.Status status = channel.getJDA().getStatus();
+        if ((status == JDA.Status.SHUTTING_DOWN || status == JDA.Status.SHUTDOWN) && connection.getChannel(channel.getIdLong()) instanceof MessageChannel current) {
+            // The bot reconnected since the edit was submitted, so send it through the new connection.
+            channel = current;
+        }
+        channel.editMessageById(edit.messageId, data).queue(message -> {
+            DiscordMessageTag result = new DiscordMessageTag(connection.botID, message);
+            for (ScriptEntry entry : waiting) {
+                entry.saveObject("message", result);
+                entry.setFinished(true);
+            }
+        }, error -> {
+            for (ScriptEntry entry : waiting) {
+                Debug.echoError(entry, error);
+                entry.setFinished(true);
+            }
+        });
+    }
+
+    /**
+     * Fails every edit still waiting for its interval, so scripts waiting on them don't hang. Called when the bot disconnects or the plugin disables.
+     */
+    public void shutdown() {
+        List<ScriptEntry> waiting = new ArrayList<>();
+        synchronized (pendingEdits) {
+            closed = true;
+            for (PendingEdit edit : pendingEdits.values()) {
+                waiting.addAll(edit.waiting);
+                edit.waiting = new ArrayList<>();
+                edit.data = null;
+            }
+            pendingEdits.clear();
+        }
+        for (ScriptEntry entry : waiting) {
+            Debug.echoError(entry, "Message edit was not sent: the Discord bot '" + connection.botID + "' disconnected first.");
+            entry.setFinished(true);
+        }
+    }
+}
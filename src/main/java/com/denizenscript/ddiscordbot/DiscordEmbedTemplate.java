@@ -0,0 +1,173 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.objects.ObjectTag;
+import com.denizenscript.denizencore.objects.core.MapTag;
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable, pre-parsed form of an embed, where any text may contain "{{key}}" placeholders.
+ * Text without placeholders is kept as-is and reused on every render, so rendering only allocates the strings that actually change.
+ */
+public class DiscordEmbedTemplate {
+
+    public static final String PLACEHOLDER_START = "{{", PLACEHOLDER_END = "}}";
+
+    /**
+     * A single piece of embed text, split into literal parts and placeholder keys.
+     * A constant slot has no keys, and its only part is the full text.
+     */
+    public static class Slot {
+
+        public final String[] parts;
+
+        public final String[] keys;
+
+        public Slot(String[] parts, String[] keys) {
+            this.parts = parts;
+            this.keys = keys;
+        }
+
+        public boolean isConstant() {
+            return keys.length == 0;
+        }
+
+        public String render(MapTag values) {
+            if (keys.length == 0) {
+                return parts[0];
+            }
+            StringBuilder output = new StringBuilder();
+            for (int i = 0; i < keys.length; i++) {
+                output.append(parts[i]);
+                ObjectTag value = values == null ? null : values.getObject(keys[i]);
+                if (value == null) {
+                    Debug.echoError("Embed template placeholder '" + keys[i] + "' has no value in 'template_values', and was left as-is.");
+                    output.append(PLACEHOLDER_START).append(keys[i]).append(PLACEHOLDER_END);
+                }
+                else {
+                    output.append(value);
+                }
+            }
+            output.append(parts[keys.length]);
+            return output.toString();
+        }
+
+        public static Slot compile(String text) {
+            if (text == null) {
+                return null;
+            }
+            List<String> parts = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            int start = 0;
+            while (true) {
+                int open = text.indexOf(PLACEHOLDER_START, start);
+                int close = open == -1 ? -1 : text.indexOf(PLACEHOLDER_END, open + PLACEHOLDER_START.length());
+                if (close == -1) {
+                    break;
+                }
+                parts.add(text.substring(start, open));
+                keys.add(text.substring(open + PLACEHOLDER_START.length(), close).trim());
+                start = close + PLACEHOLDER_END.length();
+            }
+            parts.add(start == 0 ? text : text.substring(start));
+            return new Slot(parts.toArray(new String[0]), keys.toArray(new String[0]));
+        }
+    }
+
+    public static class FieldSlot {
+
+        public final Slot name, value;
+
+        public final boolean inline;
+
+        /**
+         * The pre-built field, when neither the name nor value contain placeholders.
+         */
+        public final MessageEmbed.Field constantField;
+
+        public FieldSlot(MessageEmbed.Field field) {
+            name = Slot.compile(field.getName());
+            value = Slot.compile(field.getValue());
+            inline = field.isInline();
+            constantField = (name == null || name.isConstant()) && (value == null || value.isConstant()) ? field : null;
+        }
+
+        public MessageEmbed.Field render(MapTag values) {
+            if (constantField != null) {
+                return constantField;
+            }
+            return new MessageEmbed.Field(name == null ? null : name.render(values), value == null ? null : value.render(values), inline);
+        }
+    }
+
+    public final MessageEmbed base;
+
+    public final boolean isConstant;
+
+    public final Slot authorName, authorUrl, authorIcon, description, footer, footerIcon, image, thumbnail, title, titleUrl;
+
+    public final FieldSlot[] fields;
+
+    public DiscordEmbedTemplate(MessageEmbed embed) {
+        base = embed;
+        authorName = embed.getAuthor() == null ? null : Slot.compile(embed.getAuthor().getName());
+        authorUrl = embed.getAuthor() == null ? null : Slot.compile(embed.getAuthor().getUrl());
+        authorIcon = embed.getAuthor() == null ? null : Slot.compile(embed.getAuthor().getIconUrl());
+        description = Slot.compile(embed.getDescription());
+        footer = embed.getFooter() == null ? null : Slot.compile(embed.getFooter().getText());
+        footerIcon = embed.getFooter() == null ? null : Slot.compile(embed.getFooter().getIconUrl());
+        image = embed.getImage() == null ? null : Slot.compile(embed.getImage().getUrl());
+        thumbnail = embed.getThumbnail() == null ? null : Slot.compile(embed.getThumbnail().getUrl());
+        title = Slot.compile(embed.getTitle());
+        titleUrl = Slot.compile(embed.getUrl());
+        fields = new FieldSlot[embed.getFields().size()];
+        boolean constant = true;
+        for (Slot slot : new Slot[] { authorName, authorUrl, authorIcon, description, footer, footerIcon, image, thumbnail, title, titleUrl }) {
+            if (slot != null && !slot.isConstant()) {
+                constant = false;
+            }
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new FieldSlot(embed.getFields().get(i));
+            if (fields[i].constantField == null) {
+                constant = false;
+            }
+        }
+        isConstant = constant;
+    }
+
+    public static String render(Slot slot, MapTag values) {
+        return slot == null ? null : slot.render(values);
+    }
+
+    public MessageEmbed render(MapTag values) {
+        if (isConstant) {
+            return base;
+        }
+        EmbedBuilder builder = new EmbedBuilder();
+        if (authorName != null) {
+            builder.setAuthor(render(authorName, values), render(authorUrl, values), render(authorIcon, values));
+        }
+        if (base.getColor() != null) {
+            builder.setColor(base.getColorRaw());
+        }
+        builder.setDescription(render(description, values));
+        if (footer != null) {
+            builder.setFooter(render(footer, values), render(footerIcon, values));
+        }
+        builder.setImage(render(image, values));
+        builder.setThumbnail(render(thumbnail, values));
+        builder.setTimestamp(base.getTimestamp());
+        if (title != null) {
+            builder.setTitle(render(title, values), render(titleUrl, values));
+        }
+        for (FieldSlot field : fields) {
+            builder.addField(field.render(values));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.denizenscript.ddiscordbot;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.concrete.ThreadChannel;
+import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.events.channel.GenericChannelEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.thread.GenericThreadEvent;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits which groups and channels a bot pays attention to. Anything filtered out is not chunked, cached, or fired as a script event.
+ * Direct messages are never filtered.
+ */
+public class DiscordEventFilter {
+
+    /**
+     * If non-empty, only these groups are allowed.
+     */
+    public final HashSet<Long> allowGroups = new HashSet<>();
+
+    public final HashSet<Long> denyGroups = new HashSet<>();
+
+    /**
+     * If non-empty, only these group channels (and threads within them) are allowed.
+     */
+    public final HashSet<Long> allowChannels = new HashSet<>();
+
+    public final HashSet<Long> denyChannels = new HashSet<>();
+
+    /**
+     * Number of events dropped by the filter, by JDA event type name.
+     */
+    public final ConcurrentHashMap<String, LongAdder> dropped = new ConcurrentHashMap<>();
+
+    public boolean isEmpty() {
+        return allowGroups.isEmpty() && denyGroups.isEmpty() && allowChannels.isEmpty() && denyChannels.isEmpty();
+    }
+
+    public boolean allowsGroup(long id) {
+        return !denyGroups.contains(id) && (allowGroups.isEmpty() || allowGroups.contains(id));
+    }
+
+    public boolean allowsChannelId(long id) {
+        return !denyChannels.contains(id) && (allowChannels.isEmpty() || allowChannels.contains(id));
+    }
+
+    public boolean allowsChannel(Channel channel) {
+        if (channel == null) {
+            return true;
+        }
+        if (channel instanceof ThreadChannel thread) {
+            long parent = thread.getParentChannel().getIdLong();
+            if (denyChannels.contains(thread.getIdLong()) || denyChannels.contains(parent)) {
+                return false;
+            }
+            return allowChannels.isEmpty() || allowChannels.contains(thread.getIdLong()) || allowChannels.contains(parent);
+        }
+        return allowsChannelId(channel.getIdLong());
+    }
+
+    public boolean allows(Guild guild, Channel channel) {
+        if (guild == null) {
+            return true;
+        }
+        return allowsGroup(guild.getIdLong()) && allowsChannel(channel);
+    }
+
+    /**
+     * Returns whether the event should be handled, counting it as dropped if not.
+     */
+    public boolean allows(Event event) {
+        boolean result = true;
+        if (event instanceof GenericMessageEvent messageEvent) {
+            result = !messageEvent.isFromGuild() || allows(messageEvent.getGuild(), messageEvent.getChannel());
+        }
+        else if (event instanceof GenericInteractionCreateEvent interactionEvent) {
+            result = allows(interactionEvent.getGuild(), interactionEvent.getChannel());
+        }
+        else if (event instanceof GenericChannelEvent channelEvent) {
+            result = !channelEvent.isFromGuild() || allows(channelEvent.getGuild(), channelEvent.getChannel());
+        }
+        else if (event instanceof GenericThreadEvent threadEvent) {
+            result = allows(threadEvent.getGuild(), threadEvent.getThread());
+        }
+        else if (event instanceof GenericGuildEvent guildEvent) {
+            result = allowsGroup(guildEvent.getGuild().getIdLong());
+        }
+        if (!result) {
+            dropped.computeIfAbsent(event.getClass().getSimpleName(), k -> new LongAdder()).increment();
+        }
+        return result;
+    }
+
+    public long getTotalDropped() {
+        long total = 0;
+        for (LongAdder count : dropped.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,195 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.flags.AbstractFlagTracker;
+import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
+import com.denizenscript.denizencore.objects.core.TimeTag;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Tracks when flags on messages and reactions expire, so they can be removed in the background rather than only when a script happens to read them again.
+ * Without this, flags on long-gone messages stay in the flag file forever.
+ * Also removes all flags of a message or channel when it is deleted from Discord.
+ * With sharded or log flag storage, only flags in loaded shards are tracked: a shard's flags are indexed when it loads and dropped when it unloads,
+ * so background removal never loads flag files on the main thread.
+ */
+public class DiscordFlagExpiry {
+
+    public static EnumSet<DiscordFlagStore.Namespace> indexedNamespaces = EnumSet.of(DiscordFlagStore.Namespace.MESSAGES, DiscordFlagStore.Namespace.REACTIONS);
+
+    /**
+     * Seconds between sweeps, or 0 to disable background removal.
+     */
+    public static int sweepSeconds = 30;
+
+    /**
+     * The most flags a single sweep will check, so that a large backlog is worked through over several sweeps instead of stalling a tick.
+     */
+    public static int maxPerSweep = 1000;
+
+    public record Entry(long expires, DiscordFlagStore.Namespace namespace, long id, String path, String flag) {
+    }
+
+    public record FlagKey(String path, String flag) {
+    }
+
+    public DiscordConnection connection;
+
+    public final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong(Entry::expires));
+
+    /**
+     * The latest expiration indexed for each flag. Queue entries that don't match it are stale (the flag was since set again, or its shard unloaded), and are skipped.
+     */
+    public final HashMap<FlagKey, Entry> latest = new HashMap<>();
+
+    public long removed = 0, purged = 0;
+
+    public DiscordFlagExpiry(DiscordConnection connection) {
+        this.connection = connection;
+    }
+
+    public synchronized void add(Entry entry) {
+        FlagKey key = new FlagKey(entry.path(), entry.flag());
+        Entry previous = latest.get(key);
+        if (previous != null && previous.expires() == entry.expires()) {
+            // Already queued, like when the same flag is set again with the same expiration.
+            return;
+        }
+        latest.put(key, entry);
+        queue.add(entry);
+    }
+
+    public synchronized int size() {
+        return latest.size();
+    }
+
+    /**
+     * Stops tracking the flags in an unloaded shard.
+     */
+    public synchronized void dropShard(DiscordFlagStore store, String shardName) {
+        latest.values().removeIf(entry -> store.shardNameFor(entry.namespace(), entry.id()).equals(shardName));
+        queue.removeIf(entry -> latest.get(new FlagKey(entry.path(), entry.flag())) != entry);
+    }
+
+    /**
+     * Adds every expiring flag already in the given tracker (a loaded flag file) to the index.
+     */
+    public void indexExisting(AbstractFlagTracker root, DiscordFlagStore.Namespace namespace) {
+        if (!indexedNamespaces.contains(namespace)) {
+            return;
+        }
+        DiscordFlagStore.forEachObject(root, namespace, (path, id) -> {
+            AbstractFlagTracker tracker = new RedirectionFlagTracker(root, path);
+            for (String flag : tracker.listAllFlags()) {
+                TimeTag expiration = tracker.getFlagExpirationTime(flag);
+                if (expiration != null) {
+                    add(new Entry(expiration.millis(), namespace, id, path, flag));
+                }
+            }
+        });
+    }
+
+    public void indexExisting(AbstractFlagTracker root) {
+        for (DiscordFlagStore.Namespace namespace : indexedNamespaces) {
+            indexExisting(root, namespace);
+        }
+    }
+
+    /**
+     * Returns the tracker holding the object's flags, or null if they are in a shard that isn't loaded.
+     */
+    public AbstractFlagTracker getLoadedBase(DiscordFlagStore.Namespace namespace, long id) {
+        if (connection.flagStore == null) {
+            return connection.flags;
+        }
+        DiscordFlagStore.Shard shard = connection.flagStore.getLoadedShard(namespace, id);
+        return shard == null ? null : shard.flags;
+    }
+
+    /**
+     * Removes flags that have expired, up to the per-sweep limit. Must be called on the main thread.
+     */
+    public void sweep() {
+        if (connection.flags == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            while (!queue.isEmpty() && queue.peek().expires() <= now && due.size() < maxPerSweep) {
+                Entry entry = queue.poll();
+                if (latest.remove(new FlagKey(entry.path(), entry.flag()), entry)) {
+                    due.add(entry);
+                }
+            }
+        }
+        for (Entry entry : due) {
+            AbstractFlagTracker base = getLoadedBase(entry.namespace(), entry.id());
+            if (base == null) {
+                // Unloaded since, and will be indexed again when loaded.
+                continue;
+            }
+            AbstractFlagTracker tracker = new RedirectionFlagTracker(base, entry.path());
+            TimeTag expiration = tracker.getFlagExpirationTime(entry.flag());
+            // The flag may have been set again since, either without an expiration or with a later one (which has its own entry).
+            if (expiration == null || expiration.millis() > now) {
+                continue;
+            }
+            tracker.setFlag(entry.flag(), null, null);
+            removed++;
+            if (tracker.listAllFlags().isEmpty()) {
+                base.setFlag(entry.path(), null, null);
+            }
+        }
+    }
+
+    /**
+     * Removes the flags of a deleted message and its reactions. Must be called on the main thread.
+     * With sharded or log flag storage, only shards that are currently loaded are cleaned.
+     */
+    public void purgeMessage(long channel, long message) {
+        if (connection.flags == null) {
+            return;
+        }
+        removeIfPresent(getLoadedBase(DiscordFlagStore.Namespace.MESSAGES, message), "__messages." + channel + "." + message);
+        removeIfPresent(getLoadedBase(DiscordFlagStore.Namespace.REACTIONS, message), "__reactions." + channel + "." + message);
+    }
+
+    /**
+     * Removes the flags of a deleted channel, and of all its messages and reactions. Must be called on the main thread.
+     * With sharded or log flag storage, only shards that are currently loaded are cleaned.
+     */
+    public void purgeChannel(long channel) {
+        if (connection.flags == null) {
+            return;
+        }
+        removeIfPresent(getLoadedBase(DiscordFlagStore.Namespace.CHANNELS, channel), "__channels." + channel);
+        List<AbstractFlagTracker> bases = new ArrayList<>();
+        if (connection.flagStore == null) {
+            bases.add(connection.flags);
+        }
+        else {
+            bases.addAll(connection.flagStore.getLoadedShards(DiscordFlagStore.Namespace.MESSAGES));
+            bases.addAll(connection.flagStore.getLoadedShards(DiscordFlagStore.Namespace.REACTIONS));
+        }
+        for (AbstractFlagTracker base : bases) {
+            removeIfPresent(base, "__messages." + channel);
+            removeIfPresent(base, "__reactions." + channel);
+        }
+    }
+
+    /**
+     * Removes the flag path if anything is there, without marking the flags as modified otherwise.
+     */
+    public void removeIfPresent(AbstractFlagTracker base, String path) {
+        if (base != null && base.getFlagValue(path) != null) {
+            base.setFlag(path, null, null);
+            purged++;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A simple append-only key-value log, used to store the flags of each Discord object as its own record.
+ * Only an index of where each key's latest value sits in the file is kept in memory. Values are read from the file when needed,
+ * and changed values are appended to the end, so neither reading nor writing one object touches the rest of the flags.
+ * When most of the file is old values, the live values are copied to a new file which replaces the old one.
+ * Each record is "checksum, key length, value length, key, value", where a value length of -1 marks a removed key.
+ */
+public class DiscordFlagLog {
+
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * The log is only compacted once it is at least this large, and less than half of it is live values.
+     */
+    public static long minCompactBytes = 16 * 1024 * 1024;
+
+    public record Location(long position, int length) {
+    }
+
+    public final File file;
+
+    public FileChannel channel;
+
+    public final HashMap<String, Location> index = new HashMap<>();
+
+    /**
+     * Values waiting to be written by the next flush, with null for keys to remove.
+     */
+    public final LinkedHashMap<String, byte[]> pending = new LinkedHashMap<>();
+
+    public long end = 0, liveBytes = 0;
+
+    public long reads = 0, writes = 0, compactions = 0;
+
+    public DiscordFlagLog(File file) throws IOException {
+        this.file = file;
+        file.getParentFile().mkdirs();
+        load();
+    }
+
+    public static int checksum(byte[] key, byte[] value) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putInt(key.length).putInt(value == null ? -1 : value.length).array());
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+        return (int) crc.getValue();
+    }
+
+    public static void writeRecord(DataOutputStream output, byte[] key, byte[] value) throws IOException {
+        output.writeInt(checksum(key, value));
+        output.writeInt(key.length);
+        output.writeInt(value == null ? -1 : value.length);
+        output.write(key);
+        if (value != null) {
+            output.write(value);
+        }
+    }
+
+    public void putIndex(String key, Location location) {
+        Location old = location == null ? index.remove(key) : index.put(key, location);
+        if (old != null) {
+            liveBytes -= old.length;
+        }
+        if (location != null) {
+            liveBytes += location.length;
+        }
+    }
+
+    /**
+     * Reads the whole log to build the index. Anything after the last complete record (from a crash mid-write) is cut off.
+     */
+    public synchronized void load() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        long length = file.length();
+        long position = 0;
+        if (file.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024 * 1024))) {
+                while (length - position >= HEADER_SIZE) {
+                    int checksum = input.readInt();
+                    int keyLength = input.readInt();
+                    int valueLength = input.readInt();
+                    if (keyLength < 0 || valueLength < -1 || position + HEADER_SIZE + keyLength + Math.max(valueLength, 0) > length) {
+                        break;
+                    }
+                    byte[] key = new byte[keyLength];
+                    input.readFully(key);
+                    byte[] value = null;
+                    if (valueLength >= 0) {
+                        value = new byte[valueLength];
+                        input.readFully(value);
+                    }
+                    if (checksum(key, value) != checksum) {
+                        break;
+                    }
+                    putIndex(new String(key, StandardCharsets.UTF_8), value == null ? null : new Location(position + HEADER_SIZE + keyLength, valueLength));
+                    position += HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+                }
+            }
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (position < length) {
+            Debug.echoError("Discarding " + (length - position) + " bytes of incomplete data at the end of flag log '" + file.getPath() + "'.");
+            channel.truncate(position);
+        }
+        end = position;
+    }
+
+    public byte[] readAt(Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, location.position + buffer.position()) < 0) {
+                throw new EOFException("Flag log '" + file.getPath() + "' ended early");
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Returns the latest value for the key (including any not yet flushed), or null if there is none.
+     */
+    public synchronized byte[] read(String key) throws IOException {
+        if (pending.containsKey(key)) {
+            return pending.get(key);
+        }
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        reads++;
+        return readAt(location);
+    }
+
+    /**
+     * Queues a value (or null to remove the key) to be written by the next flush. Reads will return it right away.
+     */
+    public synchronized void queue(String key, byte[] value) {
+        pending.put(key, value);
+    }
+
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Appends all queued values to the log and syncs it to disk. If writing fails, the values stay queued for the next flush.
+     */
+    public synchronized void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        HashMap<String, Location> written = new HashMap<>();
+        for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue();
+            writeRecord(output, key, value);
+            written.put(entry.getKey(), value == null ? null : new Location(end + bytes.size() - value.length, value.length));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long position = end;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+        catch (IOException ex) {
+            channel.truncate(end);
+            throw ex;
+        }
+        end = position;
+        for (Map.Entry<String, Location> entry : written.entrySet()) {
+            putIndex(entry.getKey(), entry.getValue());
+        }
+        writes += written.size();
+        pending.clear();
+        if (end >= minCompactBytes && liveBytes * 2 < end) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest value of each key, then replaces the old log with it.
+     */
+    public synchronized void compact() throws IOException {
+        File temp = new File(file.getPath() + ".compact");
+        HashMap<String, Location> newIndex = new HashMap<>(index.size() * 2);
+        long position = 0;
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 1024 * 1024))) {
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = readAt(entry.getValue());
+                writeRecord(output, key, value);
+                newIndex.put(entry.getKey(), new Location(position + HEADER_SIZE + key.length, value.length));
+                position += HEADER_SIZE + key.length + value.length;
+            }
+            output.flush();
+            stream.getFD().sync();
+        }
+        channel.close();
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            // Reopen either way: if the move failed, the old log is still in place and still valid.
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        index.clear();
+        index.putAll(newIndex);
+        end = position;
+        compactions++;
+    }
+
+    public synchronized void close() {
+        try {
+            flush();
+            channel.close();
+        }
+        catch (IOException ex) {
+            Debug.echoError("Failed to close flag log '" + file.getPath() + "':");
+            Debug.echoError(ex);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.ddiscordbot.commands.DiscordConnectCommand;
+import com.denizenscript.denizencore.DenizenCore;
+import com.denizenscript.denizencore.flags.SavableMapFlagTracker;
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saves a bot's flags in the background: each modified flag tracker's text is taken on the main thread (where flags are changed),
+ * then written off the main thread to a temporary file which is synced to disk and atomically renamed over the real file.
+ * A crash at any point leaves either the previous complete file or the new complete file, so at most one autosave interval of changes is lost.
+ */
+public class DiscordFlagSaver {
+
+    /**
+     * Seconds between autosaves of modified flags, or 0 to only save when the bot disconnects.
+     */
+    public static int autosaveSeconds = 60;
+
+    public DiscordConnection connection;
+
+    /**
+     * The most recently queued write. Writes are chained so they always complete in order.
+     */
+    public CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+
+    public long saves = 0, lastSaveMillis = 0, lastSaveBytes = 0;
+
+    /**
+     * The last queued write for each bot ID, kept past the connection itself, so that reconnecting a bot can wait for the old connection's writes before loading its files.
+     */
+    public static final ConcurrentHashMap<String, CompletableFuture<Void>> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a future that completes once every write queued for the bot ID so far is done, whether or not it succeeded.
+     */
+    public static CompletableFuture<Void> waitForWrites(String botID) {
+        CompletableFuture<Void> writes = lastWrites.get(botID);
+        return writes == null ? CompletableFuture.completedFuture(null) : writes.exceptionally(ex -> null);
+    }
+
+    public void trackWrite(CompletableFuture<Void> write) {
+        lastWrites.put(connection.botID, write);
+        write.whenComplete((v, ex) -> lastWrites.remove(connection.botID, write));
+    }
+
+    public DiscordFlagSaver(DiscordConnection connection) {
+        this.connection = connection;
+    }
+
+    public static File tempFileFor(String path) {
+        return new File(path + ".dat.tmp");
+    }
+
+    /**
+     * An empty file that only exists while the temporary file is fully written and synced, but not yet moved into place.
+     */
+    public static File doneMarkerFor(String path) {
+        return new File(path + ".dat.tmp.done");
+    }
+
+    /**
+     * If the server stopped after the temporary file was complete but before it replaced the real file (only possible if the real file was missing), use it.
+     * A temporary file without its marker may be incomplete, so is never used (it is overwritten by the next save).
+     */
+    public static void recoverTempFile(String path) {
+        File file = new File(path + ".dat");
+        File temp = tempFileFor(path);
+        File marker = doneMarkerFor(path);
+        if (!file.exists() && temp.exists() && marker.exists() && temp.renameTo(file)) {
+            marker.delete();
+        }
+    }
+
+    /**
+     * Returns the tracker's text, to be written off the main thread. The tracker keeps the saved text of each top-level flag until that flag changes,
+     * so this only converts the flags changed since the last save, rather than copying or converting the whole flag tree.
+     */
+    public static String snapshot(SavableMapFlagTracker flags) {
+        return flags.toString();
+    }
+
+    /**
+     * Marks trackers whose write failed as modified again, so the next save retries them. Flags are only touched on the main thread, so this is handed back to it.
+     */
+    public static void markModified(List<SavableMapFlagTracker> trackers) {
+        DenizenCore.runOnMainThread(() -> {
+            for (SavableMapFlagTracker flags : trackers) {
+                flags.modified = true;
+            }
+        });
+    }
+
+    public static void writeAtomically(String path, byte[] data) throws IOException {
+        File file = new File(path + ".dat");
+        file.getParentFile().mkdirs();
+        File temp = tempFileFor(path);
+        File marker = doneMarkerFor(path);
+        marker.delete();
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(data);
+            output.getFD().sync();
+        }
+        marker.createNewFile();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        marker.delete();
+    }
+
+    /**
+     * Saves the flags if they were modified. Must be called on the main thread.
+     * If 'async' is false, waits for any queued write and then writes on the calling thread (for use when the plugin is disabling).
+     */
+    public CompletableFuture<Void> save(boolean async) {
+        List<String> paths = new ArrayList<>();
+        List<SavableMapFlagTracker> trackers = new ArrayList<>();
+        List<String> logKeys = new ArrayList<>();
+        List<String> logSnapshots = new ArrayList<>();
+        List<DiscordFlagStore.Shard> savedShards = new ArrayList<>();
+        DiscordFlagLog log = connection.flagStore == null ? null : connection.flagStore.log;
+        // Shards are written before the main file, so if a crash happens while moving flags into shards, the main file still has them.
+        if (connection.flagStore != null) {
+            for (DiscordFlagStore.Shard shard : connection.flagStore.getModifiedShards()) {
+                savedShards.add(shard);
+                if (log != null) {
+                    // Objects with no flags left are removed from the log entirely.
+                    logKeys.add(shard.path);
+                    logSnapshots.add(shard.flags.listAllFlags().isEmpty() ? null : snapshot(shard.flags));
+                    shard.flags.modified = false;
+                    continue;
+                }
+                paths.add(shard.path);
+                trackers.add(shard.flags);
+            }
+        }
+        if (connection.flags != null && connection.flags.modified) {
+            paths.add(DiscordConnectCommand.flagFilePathFor(connection.botID));
+            trackers.add(connection.flags);
+        }
+        if (trackers.isEmpty() && logKeys.isEmpty() && (log == null || !log.hasPending())) {
+            return pendingSave;
+        }
+        List<String> snapshots = new ArrayList<>(trackers.size());
+        for (SavableMapFlagTracker flags : trackers) {
+            snapshots.add(snapshot(flags));
+            flags.modified = false;
+        }
+        Runnable write = () -> {
+            long start = System.currentTimeMillis();
+            long bytes = 0;
+            if (log != null) {
+                try {
+                    for (int i = 0; i < logKeys.size(); i++) {
+                        String snapshot = logSnapshots.get(i);
+                        log.queue(logKeys.get(i), snapshot == null ? null : snapshot.getBytes(StandardCharsets.UTF_8));
+                    }
+                    log.flush();
+                }
+                catch (Throwable ex) {
+                    // Values stay queued in the log, so they are retried by the next save.
+                    // The main file is left as it was too, as it may no longer have flags that were being moved into the log.
+                    Debug.echoError("Failed to save flags for Discord bot '" + connection.botID + "' to '" + log.file.getPath() + "':");
+                    Debug.echoError(ex);
+                    markModified(trackers);
+                    return;
+                }
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                try {
+                    byte[] data = snapshots.get(i).getBytes(StandardCharsets.UTF_8);
+                    writeAtomically(paths.get(i), data);
+                    bytes += data.length;
+                }
+                catch (Throwable ex) {
+                    Debug.echoError("Failed to save flags for Discord bot '" + connection.botID + "' to '" + paths.get(i) + "':");
+                    Debug.echoError(ex);
+                    // Stop here, as the main file is written last and may no longer have flags that were moved into the shard that failed.
+                    markModified(trackers.subList(i, trackers.size()));
+                    break;
+                }
+            }
+            synchronized (this) {
+                saves++;
+                lastSaveMillis = System.currentTimeMillis() - start;
+                lastSaveBytes = bytes;
+            }
+        };
+        if (async) {
+            pendingSave = pendingSave.thenRunAsync(write);
+            trackWrite(pendingSave);
+            for (DiscordFlagStore.Shard shard : savedShards) {
+                shard.pendingWrite = pendingSave;
+            }
+        }
+        else {
+            pendingSave.join();
+            write.run();
+        }
+        return pendingSave;
+    }
+
+    /**
+     * Saves the flags, then closes the bot's flag log (if any) once everything is written.
+     * The close counts as a write for {@link #waitForWrites}, so the bot can't reconnect and open the log again until it is closed.
+     */
+    public void saveAndClose(boolean async) {
+        CompletableFuture<Void> saved = save(async);
+        if (connection.flagStore == null) {
+            return;
+        }
+        DiscordFlagStore store = connection.flagStore;
+        if (async) {
+            pendingSave = saved.exceptionally(ex -> null).thenRunAsync(store::close);
+            trackWrite(pendingSave);
+        }
+        else {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.ddiscordbot.commands.DiscordConnectCommand;
+import com.denizenscript.denizencore.flags.AbstractFlagTracker;
+import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
+import com.denizenscript.denizencore.flags.SavableMapFlagTracker;
+import com.denizenscript.denizencore.objects.ObjectTag;
+import com.denizenscript.denizencore.objects.core.MapTag;
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+import com.denizenscript.denizencore.utilities.text.StringHolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Stores the flags of Discord objects (users, channels, messages, etc.) in many small files rather than in the bot's main flag file.
+ * Flags are split by namespace, and by the time range of the object's ID (Discord IDs start with their creation time),
+ * so each file holds the objects created within one span of time. Only modified files are rewritten when saving,
+ * and a file is only loaded the first time an object in it is used, and unloaded again once it has gone unused for a while.
+ * Old messages and reactions in particular are rarely touched, so their files mostly stay on disk.
+ * Alternately, each object's flags can be kept as its own record in a {@link DiscordFlagLog}, so that only the objects actually used are ever read,
+ * and only changed objects are written.
+ */
+public class DiscordFlagStore {
+
+    public static boolean enabled = false;
+
+    /**
+     * If true, object flags are stored per object in a key-value log, rather than in shard files.
+     */
+    public static boolean useLog = false;
+
+    /**
+     * The configured time span of each shard file. A bot's folder keeps the span it was created with (see {@link #spanMillis}).
+     */
+    public static long shardSpanMillis = 30L * 24 * 60 * 60 * 1000;
+
+    public static final String SPAN_FILE = "shard_span.txt", LOG_FILE = "objects.log";
+
+    public static long idleUnloadMillis = 10 * 60 * 1000;
+
+    /**
+     * Each namespace, with how many ID levels its flag path has, and which level holds the ID that picks the shard.
+     * For example, message flags are under "__messages.<channel>.<message>", and are split by the message ID.
+     */
+    public enum Namespace {
+        USERS("__users", 1, 0),
+        CHANNELS("__channels", 1, 0),
+        GUILDS("__guilds", 1, 0),
+        COMMANDS("__commands", 1, 0),
+        ROLES("__roles", 2, 1),
+        MESSAGES("__messages", 2, 1),
+        REACTIONS("__reactions", 3, 1);
+
+        public final String key;
+
+        public final int depth, shardLevel;
+
+        Namespace(String key, int depth, int shardLevel) {
+            this.key = key;
+            this.depth = depth;
+            this.shardLevel = shardLevel;
+        }
+    }
+
+    public static class Shard {
+
+        public final String name, path;
+
+        public final SavableMapFlagTracker flags;
+
+        public long lastAccess = System.currentTimeMillis();
+
+        /**
+         * Set once the shard is unloaded, so cached trackers pointing at it know to look it up again.
+         */
+        public volatile boolean unloaded = false;
+
+        /**
+         * The queued write holding this shard's latest changes. The shard isn't unloaded until it's done, as loading it again meanwhile would read the old file.
+         */
+        public CompletableFuture<Void> pendingWrite = CompletableFuture.completedFuture(null);
+
+        public Shard(String name, String path, SavableMapFlagTracker flags) {
+            this.name = name;
+            this.path = path;
+            this.flags = flags;
+        }
+    }
+
+    public DiscordConnection connection;
+
+    public final HashMap<String, Shard> shards = new HashMap<>();
+
+    public long shardLoads = 0, shardUnloads = 0;
+
+    /**
+     * The key-value log holding object flags, or null if shard files are used.
+     */
+    public DiscordFlagLog log;
+
+    /**
+     * The time span of each shard file for this bot. Changing the span would put objects in different files than the ones holding their flags,
+     * so it is stored in the bot's flag folder, and the stored span is used even if the config has changed since.
+     */
+    public long spanMillis = shardSpanMillis;
+
+    public DiscordFlagStore(DiscordConnection connection) {
+        this.connection = connection;
+        if (useLog) {
+            try {
+                log = new DiscordFlagLog(new File(getFolder() + "/" + LOG_FILE));
+            }
+            catch (IOException ex) {
+                Debug.echoError("Failed to open flag log for bot '" + connection.botID + "', using sharded flag files instead:");
+                Debug.echoError(ex);
+            }
+        }
+        if (log == null) {
+            loadSpan();
+        }
+    }
+
+    public String getFolder() {
+        return DiscordConnectCommand.flagFilePathFor(connection.botID);
+    }
+
+    /**
+     * Reads the shard span stored in the bot's flag folder, or stores the configured span if there is none yet.
+     */
+    public void loadSpan() {
+        File file = new File(getFolder(), SPAN_FILE);
+        try {
+            if (file.exists()) {
+                long stored = Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+                if (stored <= 0) {
+                    throw new NumberFormatException("Invalid span " + stored);
+                }
+                spanMillis = stored;
+                if (stored != shardSpanMillis) {
+                    Debug.echoError("The 'Flag shard days' config option has changed, but bot '" + connection.botID + "' already has flag files split by " + (stored / (24 * 60 * 60 * 1000))
+                            + " days, so will keep using that. To change it, switch the bot to 'single' flag storage and back (which moves its flags out of the files and back in again).");
+                }
+                return;
+            }
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), Long.toString(spanMillis).getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException | NumberFormatException ex) {
+            Debug.echoError("Failed to read or write the flag shard span of bot '" + connection.botID + "' in '" + file.getPath() + "':");
+            Debug.echoError(ex);
+        }
+    }
+
+    public long bucketFor(long id) {
+        return (id >>> 22) / spanMillis;
+    }
+
+    public String shardNameFor(Namespace namespace, long id) {
+        return namespace.key.substring(2) + "_" + (log != null ? id : bucketFor(id));
+    }
+
+    /**
+     * Returns the shard holding the object's flags if it is loaded, or null if it isn't (without loading it).
+     */
+    public synchronized Shard getLoadedShard(Namespace namespace, long id) {
+        return shards.get(shardNameFor(namespace, id));
+    }
+
+    public synchronized Shard getShard(Namespace namespace, long id) {
+        String name = shardNameFor(namespace, id);
+        Shard shard = shards.get(name);
+        if (shard == null) {
+            if (log != null) {
+                shard = new Shard(name, name, readFromLog(name));
+            }
+            else {
+                String path = getFolder() + "/" + name;
+                DiscordFlagSaver.recoverTempFile(path);
+                shard = new Shard(name, path, SavableMapFlagTracker.loadFlagFile(path, false));
+            }
+            shards.put(name, shard);
+            shardLoads++;
+            connection.flagExpiry.indexExisting(shard.flags, namespace);
+        }
+        shard.lastAccess = System.currentTimeMillis();
+        return shard;
+    }
+
+    public SavableMapFlagTracker readFromLog(String key) {
+        try {
+            byte[] data = log.read(key);
+            if (data != null) {
+                return new SavableMapFlagTracker(new String(data, StandardCharsets.UTF_8));
+            }
+        }
+        catch (IOException ex) {
+            Debug.echoError("Failed to read flags '" + key + "' for bot '" + connection.botID + "':");
+            Debug.echoError(ex);
+        }
+        return new SavableMapFlagTracker();
+    }
+
+    public synchronized List<Shard> getModifiedShards() {
+        List<Shard> result = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            if (shard.flags.modified) {
+                result.add(shard);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unloads shards that have no unsaved changes (including changes still being written) and haven't been used recently.
+     */
+    public synchronized void unloadIdle() {
+        long now = System.currentTimeMillis();
+        long unloadsBefore = shardUnloads;
+        Iterator<Shard> iterator = shards.values().iterator();
+        while (iterator.hasNext()) {
+            Shard shard = iterator.next();
+            if (!shard.flags.modified && shard.pendingWrite.isDone() && now - shard.lastAccess > idleUnloadMillis) {
+                shard.unloaded = true;
+                iterator.remove();
+                shardUnloads++;
+                // Indexed again from the file if the shard is ever loaded again.
+                connection.flagExpiry.dropShard(this, shard.name);
+            }
+        }
+        if (shardUnloads != unloadsBefore) {
+            connection.forgetStaleFlagTrackers();
+        }
+    }
+
+    /**
+     * Moves any Discord object flags still in the main flag file (from before sharding was enabled) into their shards.
+     */
+    public void migrate(SavableMapFlagTracker root) {
+        for (Namespace namespace : Namespace.values()) {
+            int moved = copyObjects(root, namespace);
+            if (moved > 0) {
+                root.setFlag(namespace.key, null, null);
+                Debug.log("dDiscordBot", "Moved flags of " + moved + " objects under '" + namespace.key + "' for bot '" + connection.botID + "' to sharded flag storage.");
+            }
+        }
+    }
+
+    /**
+     * Moves object flags from shard files (from before the key-value log was enabled) into the log.
+     * The flags are written to the log before each file is renamed to '.dat.migrated', so a crash part way through only repeats the move next time.
+     */
+    public void migrateShardFiles() {
+        if (log == null) {
+            return;
+        }
+        File[] files = new File(getFolder()).listFiles((dir, fileName) -> fileName.endsWith(".dat") && fileName.contains("_"));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        int moved = 0;
+        for (File file : files) {
+            String fileName = file.getName().substring(0, file.getName().length() - ".dat".length());
+            String prefix = "__" + fileName.substring(0, fileName.lastIndexOf('_'));
+            for (Namespace namespace : Namespace.values()) {
+                if (namespace.key.equals(prefix)) {
+                    SavableMapFlagTracker shardFlags = SavableMapFlagTracker.loadFlagFile(file.getPath().substring(0, file.getPath().length() - ".dat".length()), false);
+                    moved += copyObjects(shardFlags, namespace);
+                }
+            }
+        }
+        connection.flagSaver.save(false);
+        for (File file : files) {
+            file.renameTo(new File(file.getPath() + ".migrated"));
+        }
+        Debug.log("dDiscordBot", "Moved flags of " + moved + " objects from " + files.length + " flag files for bot '" + connection.botID + "' to the flag log.");
+    }
+
+    /**
+     * Moves object flags from the flag log (from before switching from log to sharded storage) into shard files.
+     * The log is only renamed to '.migrated' once the shards are written.
+     */
+    public void migrateLogFile() {
+        File logFile = new File(getFolder(), LOG_FILE);
+        if (log != null || !logFile.exists()) {
+            return;
+        }
+        List<SavableMapFlagTracker> records = readLogFile(connection, logFile);
+        if (records == null) {
+            return;
+        }
+        int moved = 0;
+        for (SavableMapFlagTracker record : records) {
+            for (Namespace namespace : Namespace.values()) {
+                moved += copyObjects(record, namespace);
+            }
+        }
+        connection.flagSaver.save(false);
+        logFile.renameTo(new File(logFile.getPath() + ".migrated"));
+        Debug.log("dDiscordBot", "Moved flags of " + moved + " objects from the flag log for bot '" + connection.botID + "' to sharded flag storage.");
+    }
+
+    /**
+     * Returns every record in a flag log file, or null if it can't be read.
+     */
+    public static List<SavableMapFlagTracker> readLogFile(DiscordConnection connection, File logFile) {
+        List<SavableMapFlagTracker> result = new ArrayList<>();
+        try {
+            DiscordFlagLog oldLog = new DiscordFlagLog(logFile);
+            try {
+                for (String key : new ArrayList<>(oldLog.index.keySet())) {
+                    byte[] data = oldLog.read(key);
+                    if (data != null) {
+                        result.add(new SavableMapFlagTracker(new String(data, StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+            finally {
+                oldLog.close();
+            }
+        }
+        catch (IOException ex) {
+            Debug.echoError("Failed to read flag log '" + logFile.getPath() + "' for bot '" + connection.botID + "', so its flags were not moved:");
+            Debug.echoError(ex);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Moves object flags from shard files and the flag log (from when sharded or log storage was enabled) back into the main flag file, for bots using single storage.
+     * The main file is written before the old files are renamed to '.migrated', so a crash part way through only repeats the move next time.
+     */
+    public static void migrateBack(DiscordConnection connection, SavableMapFlagTracker root) {
+        String folder = DiscordConnectCommand.flagFilePathFor(connection.botID);
+        File[] files = new File(folder).listFiles((dir, fileName) -> fileName.endsWith(".dat") && fileName.contains("_"));
+        File logFile = new File(folder, LOG_FILE);
+        List<SavableMapFlagTracker> sources = new ArrayList<>();
+        if (logFile.exists()) {
+            List<SavableMapFlagTracker> records = readLogFile(connection, logFile);
+            if (records == null) {
+                return;
+            }
+            sources.addAll(records);
+        }
+        if (files != null) {
+            for (File file : files) {
+                sources.add(SavableMapFlagTracker.loadFlagFile(file.getPath().substring(0, file.getPath().length() - ".dat".length()), false));
+            }
+        }
+        // With no shard files left, a later switch back to sharded storage can use the configured span again.
+        File spanFile = new File(folder, SPAN_FILE);
+        if (sources.isEmpty() && !logFile.exists()) {
+            spanFile.delete();
+            return;
+        }
+        int[] moved = new int[1];
+        for (SavableMapFlagTracker source : sources) {
+            for (Namespace namespace : Namespace.values()) {
+                forEachObject(source, namespace, (path, id) -> {
+                    AbstractFlagTracker from = new RedirectionFlagTracker(source, path);
+                    AbstractFlagTracker target = new RedirectionFlagTracker(root, path);
+                    for (String flag : from.listAllFlags()) {
+                        target.setFlag(flag, from.getFlagValue(flag), from.getFlagExpirationTime(flag));
+                    }
+                    moved[0]++;
+                });
+            }
+        }
+        try {
+            DiscordFlagSaver.writeAtomically(folder, root.toString().getBytes(StandardCharsets.UTF_8));
+            root.modified = false;
+        }
+        catch (IOException ex) {
+            Debug.echoError("Failed to move flags back to the main flag file for bot '" + connection.botID + "', so the old flag files were kept:");
+            Debug.echoError(ex);
+            return;
+        }
+        if (files != null) {
+            for (File file : files) {
+                file.renameTo(new File(file.getPath() + ".migrated"));
+            }
+        }
+        if (logFile.exists()) {
+            logFile.renameTo(new File(logFile.getPath() + ".migrated"));
+        }
+        spanFile.delete();
+        Debug.log("dDiscordBot", "Moved flags of " + moved[0] + " objects back to the main flag file for bot '" + connection.botID + "', as it uses single flag storage.");
+    }
+
+    public int copyObjects(AbstractFlagTracker from, Namespace namespace) {
+        int[] moved = new int[1];
+        forEachObject(from, namespace, (path, id) -> {
+            AbstractFlagTracker source = new RedirectionFlagTracker(from, path);
+            AbstractFlagTracker target = connection.getFlagTracker(namespace, id, path);
+            for (String flag : source.listAllFlags()) {
+                target.setFlag(flag, source.getFlagValue(flag), source.getFlagExpirationTime(flag));
+            }
+            moved[0]++;
+        });
+        return moved[0];
+    }
+
+    public void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Calls the handler with the full flag path and shard ID of every object in the namespace that has flags in the given tracker.
+     */
+    public static void forEachObject(AbstractFlagTracker root, Namespace namespace, BiConsumer<String, Long> handler) {
+        ObjectTag value = root.getFlagValue(namespace.key);
+        if (value instanceof MapTag map) {
+            forEachObject(namespace, map, namespace.key, 0, 0, handler);
+        }
+    }
+
+    public static void forEachObject(Namespace namespace, MapTag map, String path, int level, long shardId, BiConsumer<String, Long> handler) {
+        for (StringHolder key : new ArrayList<>(map.map.keySet())) {
+            long id = shardId;
+            if (level == namespace.shardLevel) {
+                try {
+                    id = Long.parseLong(key.str);
+                }
+                catch (NumberFormatException ex) {
+                    id = 0;
+                }
+            }
+            String subPath = path + "." + key.str;
+            if (level + 1 < namespace.depth) {
+                if (map.map.get(key) instanceof MapTag subMap) {
+                    forEachObject(namespace, subMap, subPath, level + 1, id, handler);
+                }
+                continue;
+            }
+            handler.accept(subPath, id);
+        }
+    }
+
+    public synchronized List<SavableMapFlagTracker> getLoadedShards(Namespace namespace) {
+        String prefix = namespace.key.substring(2) + "_";
+        List<SavableMapFlagTracker> result = new ArrayList<>();
+        for (Map.Entry<String, Shard> entry : shards.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.add(entry.getValue().flags);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.ddiscordbot.objects.DiscordInteractionTag;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Holds a bot's recent interactions by ID, for as long as Discord allows responding to them (15 minutes).
+ * Expiry uses a hashed timing wheel: each interaction is dropped into the wheel slot for the tick it expires on,
+ * and each tick only looks at the one slot that is due, rather than every interaction having its own scheduled task.
+ */
+public class DiscordInteractionCache {
+
+    public static final long EXPIRE_MILLIS = 15 * 60 * 1000;
+
+    public static final long TICK_MILLIS = 10 * 1000;
+
+    /**
+     * Must cover the full expiry time, so entries are never more than one lap of the wheel away.
+     */
+    public static final int WHEEL_SIZE = 128;
+
+    public static final long EXPIRE_TICKS = (EXPIRE_MILLIS + TICK_MILLIS - 1) / TICK_MILLIS;
+
+    public record Entry(DiscordInteractionTag tag, long expireTick) {
+    }
+
+    public final ConcurrentHashMap<Long, DiscordInteractionTag> interactions = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public final ConcurrentLinkedQueue<Entry>[] wheel = new ConcurrentLinkedQueue[WHEEL_SIZE];
+
+    public volatile long currentTick = 0;
+
+    public long expired = 0;
+
+    public DiscordInteractionCache() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public DiscordInteractionTag get(long id) {
+        return interactions.get(id);
+    }
+
+    public void add(DiscordInteractionTag tag) {
+        long expireTick = currentTick + EXPIRE_TICKS;
+        interactions.put(tag.interaction_id, tag);
+        wheel[(int) (expireTick % WHEEL_SIZE)].add(new Entry(tag, expireTick));
+    }
+
+    public int size() {
+        return interactions.size();
+    }
+
+    /**
+     * Advances the wheel by one tick, expiring everything due in the new slot. Should be called every {@link #TICK_MILLIS} on the main thread.
+     */
+    public void tick() {
+        long tick = currentTick + 1;
+        currentTick = tick;
+        ConcurrentLinkedQueue<Entry> slot = wheel[(int) (tick % WHEEL_SIZE)];
+        Entry entry;
+        int remaining = slot.size();
+        while (remaining-- > 0 && (entry = slot.poll()) != null) {
+            if (entry.expireTick() > tick) {
+                // Due on a later lap of the wheel.
+                slot.add(entry);
+                continue;
+            }
+            if (interactions.remove(entry.tag().interaction_id, entry.tag())) {
+                entry.tag().interaction = null;
+                expired++;
+            }
+        }
+    }
+
+    public void clear() {
+        interactions.clear();
+        for (ConcurrentLinkedQueue<Entry> slot : wheel) {
+            slot.clear();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.flags.AbstractFlagTracker;
+import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
+import com.denizenscript.denizencore.objects.ObjectTag;
+import com.denizenscript.denizencore.objects.core.TimeTag;
+
+/**
+ * The flag tracker for one Discord object. Trackers are kept in a small per-bot cache (see {@link DiscordConnection#getFlagTracker(DiscordFlagStore.Namespace, long, long)}),
+ * so checking flags on the same user or message repeatedly doesn't allocate a new tracker, look up its shard, and build its flag path string every time.
+ * Each flag read or write still goes through the root tracker by its full path, the same as any redirection tracker.
+ * Also adds any expiring flag it sets to the bot's {@link DiscordFlagExpiry} index, for namespaces that are indexed.
+ */
+public class DiscordObjectFlagTracker extends RedirectionFlagTracker {
+
+    /**
+     * The number of cached trackers per namespace per bot. A tracker is cached in the slot picked by its ID, replacing whatever was there.
+     */
+    public static final int CACHE_SIZE = 1024;
+
+    public static int slotFor(long id) {
+        return (int) (id ^ (id >>> 22) ^ (id >>> 41)) & (CACHE_SIZE - 1);
+    }
+
+    public final DiscordFlagStore.Namespace namespace;
+
+    public final long parent, id;
+
+    public final String path;
+
+    /**
+     * The tracker that holds this object's flags: either the bot's main flags, or a shard.
+     */
+    public final AbstractFlagTracker root;
+
+    /**
+     * The shard holding this object's flags, or null if they are in the bot's main flags.
+     */
+    public final DiscordFlagStore.Shard shard;
+
+    /**
+     * The expiry index to add expiring flags to, or null if this namespace isn't indexed.
+     */
+    public final DiscordFlagExpiry expiry;
+
+    public DiscordObjectFlagTracker(AbstractFlagTracker root, DiscordFlagStore.Shard shard, String path, DiscordFlagStore.Namespace namespace, long parent, long id, DiscordFlagExpiry expiry) {
+        super(root, path);
+        this.root = root;
+        this.shard = shard;
+        this.path = path;
+        this.namespace = namespace;
+        this.parent = parent;
+        this.id = id;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Returns whether this tracker still points at the object's current flags, ie the shard wasn't unloaded since, or the main flags weren't replaced.
+     */
+    public boolean isCurrent(DiscordConnection connection) {
+        if (shard != null) {
+            return !shard.unloaded;
+        }
+        return connection.flagStore == null && root == connection.flags;
+    }
+
+    @Override
+    public void setFlag(String key, ObjectTag value, TimeTag expiration) {
+        super.setFlag(key, value, expiration);
+        if (expiry != null && value != null && expiration != null) {
+            expiry.add(new DiscordFlagExpiry.Entry(expiration.millis(), namespace, id, path, key));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.denizenscript.ddiscordbot;
+
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Per-bot policy for submitting REST actions: requests that are safe to repeat are retried with jittered exponential backoff after timeouts and connection problems,
+ * and a circuit breaker makes every request fail fast while Discord keeps failing (including server errors), rather than letting scripts pile more requests onto an outage.
+ * Server errors are not retried here, as JDA already retries those itself before failing the request.
+ */
+public class DiscordRestPolicy {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static int retryAttempts = 3;
+
+    public static long retryBaseDelayMillis = 500, retryMaxDelayMillis = 10_000;
+
+    public static int breakerThreshold = 5;
+
+    public static long breakerOpenMillis = 30_000;
+
+    public DiscordConnection connection;
+
+    public State state = State.CLOSED;
+
+    public int consecutiveFailures = 0;
+
+    public long openedAt = 0;
+
+    /**
+     * Whether the single trial request allowed while half-open is still in progress.
+     */
+    public boolean trialInFlight = false;
+
+    public long retries = 0, fastFails = 0, trips = 0;
+
+    public DiscordRestPolicy(DiscordConnection connection) {
+        this.connection = connection;
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Returns whether the request may not have reached Discord at all, so is worth sending again.
+     */
+    public static boolean isRetryable(Throwable error) {
+        return error instanceof TimeoutException || error instanceof IOException;
+    }
+
+    /**
+     * Returns whether the failure suggests Discord is having problems, rather than the request being bad.
+     */
+    public static boolean isTransient(Throwable error) {
+        if (error instanceof ErrorResponseException response) {
+            return response.getErrorResponse() == ErrorResponse.SERVER_ERROR;
+        }
+        return isRetryable(error);
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= breakerOpenMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return state;
+    }
+
+    public synchronized boolean allowRequest() {
+        switch (getState()) {
+            case OPEN:
+                return false;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Records that Discord answered the request, even if the answer was an error caused by the request itself (like a missing permission).
+     */
+    public synchronized void recordReachable() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordTransientFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (breakerThreshold <= 0) {
+            return;
+        }
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= breakerThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trips++;
+        }
+    }
+
+    /**
+     * Full jitter: a random delay between zero and the exponential backoff cap for this attempt.
+     */
+    public static long backoffMillis(int attempt) {
+        long cap = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempt, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Submits the action under this policy. Only pass 'idempotent' as true for actions that have the same effect if sent twice,
+     * like adding a reaction or editing a message, as a request that timed out may still have been applied by Discord.
+     */
+    public <T> CompletableFuture<T> submit(RestAction<T> action, boolean idempotent) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(action, idempotent ? retryAttempts : 0, 0, result);
+        return result;
+    }
+
+    public <T> void attempt(RestAction<T> action, int retriesLeft, int attempt, CompletableFuture<T> result) {
+        if (!allowRequest()) {
+            synchronized (this) {
+                fastFails++;
+            }
+            result.completeExceptionally(new IllegalStateException("Discord requests for bot '" + connection.botID + "' are failing fast, as Discord has been failing repeatedly. Will try again shortly."));
+            return;
+        }
+        action.submit().whenComplete((value, error) -> {
+            if (error == null) {
+                recordReachable();
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (!isTransient(cause)) {
+                recordReachable();
+                result.completeExceptionally(cause);
+                return;
+            }
+            recordTransientFailure();
+            if (retriesLeft <= 0 || !isRetryable(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            synchronized (this) {
+                retries++;
+            }
+            CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS).execute(() -> attempt(action, retriesLeft - 1, attempt + 1, result));
+        });
+    }
+}
@@ -1,11 +1,20 @@
 package com.denizenscript.ddiscordbot;
 
+import com.denizenscript.ddiscordbot.commands.DiscordConnectCommand;
 import com.denizenscript.ddiscordbot.objects.DiscordBotTag;
 import com.denizenscript.denizen.events.BukkitScriptEvent;
+import com.denizenscript.denizencore.events.ScriptEvent;
 import com.denizenscript.denizencore.objects.ObjectTag;
 import net.dv8tion.jda.api.entities.channel.Channel;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.events.Event;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 public abstract class DiscordScriptEvent extends BukkitScriptEvent {
 
@@ -17,6 +26,115 @@ public abstract class DiscordScriptEvent extends BukkitScriptEvent {
 
     public Event event;
 
+    /**
+     * The gateway intents Discord needs to send the events this script event is fired for, used by bots connected with automatic intents.
+     */
+    public GatewayIntent[] requiredIntents = new GatewayIntent[0];
+
+    public void requireIntents(GatewayIntent... intents) {
+        requiredIntents = intents;
+    }
+
+    /**
+     * For component events, the index of script paths by their custom ID switch. Null for other events.
+     */
+    public DiscordComponentRouter componentRouter;
+
+    /**
+     * For component events, returns the custom ID of the component the event is for.
+     */
+    public String getComponentId() {
+        return null;
+    }
+
+    /**
+     * Called right before the event is fired, once the event data is set.
+     */
+    public void beforeFire() {
+        if (componentRouter != null) {
+            componentRouter.route(eventPaths, getComponentId());
+        }
+    }
+
+    public boolean tryComponentId(ScriptPath path) {
+        if (componentRouter.isRouted(path)) {
+            return componentRouter.allows(path);
+        }
+        return trySwitch(path, componentRouter.switchName, getComponentId());
+    }
+
+    /**
+     * The switches of each script path, compiled when scripts load.
+     */
+    public final IdentityHashMap<ScriptPath, HashMap<String, DiscordSwitchMatcher>> compiledSwitches = new IdentityHashMap<>();
+
+    public HashMap<String, DiscordSwitchMatcher> compileSwitches(ScriptPath path) {
+        HashMap<String, DiscordSwitchMatcher> result = new HashMap<>();
+        for (Map.Entry<String, String> entry : path.switches.entrySet()) {
+            result.put(entry.getKey(), new DiscordSwitchMatcher(entry.getValue()));
+        }
+        compiledSwitches.put(path, result);
+        return result;
+    }
+
+    /**
+     * Returns the compiled switch of the given name, or null if the path doesn't have it.
+     */
+    public DiscordSwitchMatcher getSwitch(ScriptPath path, String name) {
+        if (path.switches.isEmpty()) {
+            return null;
+        }
+        HashMap<String, DiscordSwitchMatcher> switches = compiledSwitches.get(path);
+        if (switches == null) {
+            switches = compileSwitches(path);
+        }
+        return switches.get(name);
+    }
+
+    /**
+     * Equivalent to runGenericSwitchCheck, using the compiled switch.
+     */
+    public boolean trySwitch(ScriptPath path, String name, String value) {
+        DiscordSwitchMatcher matcher = getSwitch(path, name);
+        return matcher == null || matcher.matches(value);
+    }
+
+    /**
+     * Returns the intents required by every Discord script event that currently has at least one script path.
+     */
+    public static EnumSet<GatewayIntent> getIntentsInUse() {
+        EnumSet<GatewayIntent> result = EnumSet.noneOf(GatewayIntent.class);
+        for (ScriptEvent event : ScriptEvent.events) {
+            if (event instanceof DiscordScriptEvent discordEvent && !event.eventPaths.isEmpty()) {
+                Collections.addAll(result, discordEvent.requiredIntents);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void init() {
+        super.init();
+        compiledSwitches.clear();
+        for (ScriptPath path : eventPaths) {
+            compileSwitches(path);
+        }
+        if (componentRouter != null) {
+            componentRouter.invalidate();
+        }
+        DiscordConnectCommand.scheduleIntentRefresh();
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        compiledSwitches.clear();
+        if (componentRouter != null) {
+            componentRouter.invalidate();
+        }
+        DiscordConnectCommand.scheduleIntentRefresh();
+    }
+
     public DiscordBotTag getBot() {
         return new DiscordBotTag(botID);
     }
@@ -27,10 +145,17 @@ public abstract class DiscordScriptEvent extends BukkitScriptEvent {
 
     @Override
     public boolean matches(ScriptPath path) {
-        if (!runGenericSwitchCheck(path, "for", botID)) {
+        if (!trySwitch(path, "for", botID)) {
             return false;
         }
-        return super.matches(path);
+        if (!super.matches(path)) {
+            return false;
+        }
+        // Subclasses check their own switches before calling this, so the path has now matched entirely.
+        if (componentRouter != null) {
+            componentRouter.countMatch(path);
+        }
+        return true;
     }
 
     @Override
@@ -41,43 +166,29 @@ public abstract class DiscordScriptEvent extends BukkitScriptEvent {
         return super.getContext(name);
     }
 
-    public static boolean tryChannel(ScriptPath path, Channel channel) {
+    public boolean tryChannel(ScriptPath path, Channel channel) {
         return tryChannel(path, channel, "channel");
     }
 
-    public static boolean tryChannel(ScriptPath path, Channel channel, String switchName) {
-        String text = path.switches.get(switchName);
-        if (text == null) {
+    public boolean tryChannel(ScriptPath path, Channel channel, String switchName) {
+        DiscordSwitchMatcher matcher = getSwitch(path, switchName);
+        if (matcher == null) {
             return true;
         }
         if (channel == null) {
             return false;
         }
-        MatchHelper matcher = createMatcher(text);
-        if (matcher.doesMatch(channel.getId())) {
-            return true;
-        }
-        if (matcher.doesMatch(channel.getName())) {
-            return true;
-        }
-        return false;
+        return matcher.matchesIdOrName(channel.getIdLong(), channel.getName());
     }
 
-    public static boolean tryGuild(ScriptPath path, Guild guild) {
-        String text = path.switches.get("group");
-        if (text == null) {
+    public boolean tryGuild(ScriptPath path, Guild guild) {
+        DiscordSwitchMatcher matcher = getSwitch(path, "group");
+        if (matcher == null) {
             return true;
         }
         if (guild == null) {
             return false;
         }
-        MatchHelper matcher = createMatcher(text);
-        if (matcher.doesMatch(guild.getId())) {
-            return true;
-        }
-        if (matcher.doesMatch(guild.getName())) {
-            return true;
-        }
-        return false;
+        return matcher.matchesIdOrName(guild.getIdLong(), guild.getName());
     }
 }
@@ -0,0 +1,110 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.events.ScriptEvent;
+import com.denizenscript.denizencore.utilities.CoreUtilities;
+
+/**
+ * A script event switch value, compiled once when scripts load rather than each time the event fires.
+ * Plain values are compared directly, all-digit values (IDs) are compared as numbers, and anything else uses the normal Denizen matcher.
+ * Matching is case-insensitive, as with normal switches.
+ */
+public class DiscordSwitchMatcher {
+
+    public static final int NAME_CACHE_SIZE = 1024;
+
+    public record LowerName(long id, String name, String lower) {
+    }
+
+    /**
+     * Recently lowercased channel and group names, by ID. An entry is only reused if the name is the same string object, so renames are picked up.
+     */
+    public static final LowerName[] lowerNames = new LowerName[NAME_CACHE_SIZE];
+
+    public static String lowerName(long id, String name) {
+        int slot = (int) (id ^ (id >>> 22) ^ (id >>> 41)) & (NAME_CACHE_SIZE - 1);
+        LowerName entry = lowerNames[slot];
+        if (entry != null && entry.id == id && entry.name == name) {
+            return entry.lower;
+        }
+        String lower = CoreUtilities.toLowerCase(name);
+        lowerNames[slot] = new LowerName(id, name, lower);
+        return lower;
+    }
+
+    public static boolean isPlain(String value) {
+        if (CoreUtilities.toLowerCase(value).startsWith("regex:")) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' || c == '!' || c == '&' || c == '|' || c == '^' || c == '(' || c == ')' || c == '[' || c == ']') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value as a positive number if it is only digits, or -1 otherwise.
+     */
+    public static long parseId(String value) {
+        if (value.isEmpty() || value.length() > 19) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+            if (result < 0) {
+                return -1;
+            }
+        }
+        return result;
+    }
+
+    public final String lowerText;
+
+    public final boolean plain;
+
+    public final long id;
+
+    public final ScriptEvent.MatchHelper matcher;
+
+    public DiscordSwitchMatcher(String text) {
+        lowerText = CoreUtilities.toLowerCase(text);
+        plain = isPlain(text);
+        id = plain ? parseId(text) : -1;
+        matcher = plain ? null : ScriptEvent.createMatcher(text);
+    }
+
+    public boolean matches(String value) {
+        if (value == null) {
+            return false;
+        }
+        return plain ? CoreUtilities.equalsIgnoreCase(lowerText, value) : matcher.doesMatch(value);
+    }
+
+    /**
+     * Matches a value that is already lowercase.
+     */
+    public boolean matchesLower(String lowerValue) {
+        return plain ? lowerText.equals(lowerValue) : matcher.doesMatch(lowerValue);
+    }
+
+    public boolean matchesId(long value) {
+        if (plain) {
+            return id == value;
+        }
+        return matcher.doesMatch(Long.toString(value));
+    }
+
+    /**
+     * Matches a channel, group, or similar, by either its ID or its name.
+     */
+    public boolean matchesIdOrName(long value, String name) {
+        return matchesId(value) || matchesLower(lowerName(value, name));
+    }
+}
@@ -0,0 +1,219 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.objects.core.ElementTag;
+import com.denizenscript.denizencore.objects.core.MapTag;
+import com.denizenscript.denizencore.utilities.debugging.Debug;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread pools shared by every bot connected with shared or virtual thread pools, rather than each bot (and each shard) starting its own set of JDA pools.
+ */
+public class DiscordThreadPools {
+
+    public enum Mode { DEFAULT, SHARED, VIRTUAL }
+
+    public static int callbackThreads = 4, rateLimitThreads = 2, gatewayThreads = 1, eventThreads = 2;
+
+    /**
+     * If false, events are still handled on each bot's own gateway thread, which keeps them in order.
+     */
+    public static boolean useEventPool = false;
+
+    public static ExecutorService sharedCallbackPool, virtualCallbackPool, sharedEventPool, virtualEventPool;
+
+    public static ScheduledExecutorService rateLimitPool, gatewayPool;
+
+    /**
+     * Runs each task on a new virtual thread, counting tasks so the pool can be monitored like a normal pool.
+     */
+    public static class VirtualThreadExecutor extends AbstractExecutorService {
+
+        public final ExecutorService delegate;
+
+        public final LongAdder submitted = new LongAdder(), completed = new LongAdder();
+
+        public final AtomicInteger active = new AtomicInteger(), largestActive = new AtomicInteger();
+
+        public VirtualThreadExecutor(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            submitted.increment();
+            delegate.execute(() -> {
+                largestActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    command.run();
+                }
+                finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    public static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "dDiscordBot " + name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor, or null if this Java version doesn't have virtual threads.
+     * Found by reflection, as the plugin is still built for older Java versions.
+     */
+    public static ExecutorService createVirtualExecutor() {
+        try {
+            return new VirtualThreadExecutor((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        }
+        catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    public static synchronized ExecutorService getCallbackPool(Mode mode) {
+        if (mode == Mode.VIRTUAL) {
+            if (virtualCallbackPool == null) {
+                virtualCallbackPool = createVirtualExecutor();
+            }
+            if (virtualCallbackPool != null) {
+                return virtualCallbackPool;
+            }
+            Debug.echoError("Virtual threads require Java 21 or newer. Using shared platform threads instead.");
+        }
+        if (sharedCallbackPool == null) {
+            sharedCallbackPool = Executors.newFixedThreadPool(callbackThreads, threadFactory("Callback"));
+        }
+        return sharedCallbackPool;
+    }
+
+    /**
+     * Returns the shared event pool, or null if events should stay on the gateway threads.
+     */
+    public static synchronized ExecutorService getEventPool(Mode mode) {
+        if (!useEventPool) {
+            return null;
+        }
+        if (mode == Mode.VIRTUAL) {
+            if (virtualEventPool == null) {
+                virtualEventPool = createVirtualExecutor();
+            }
+            if (virtualEventPool != null) {
+                return virtualEventPool;
+            }
+        }
+        if (sharedEventPool == null) {
+            sharedEventPool = Executors.newFixedThreadPool(eventThreads, threadFactory("Event"));
+        }
+        return sharedEventPool;
+    }
+
+    /**
+     * Returns the event pool that bots using the mode were given, without creating one, or null if there is none.
+     */
+    public static synchronized ExecutorService getExistingEventPool(Mode mode) {
+        if (!useEventPool) {
+            return null;
+        }
+        if (mode == Mode.VIRTUAL && virtualEventPool != null) {
+            return virtualEventPool;
+        }
+        return sharedEventPool;
+    }
+
+    public static synchronized ScheduledExecutorService getRateLimitPool() {
+        if (rateLimitPool == null) {
+            rateLimitPool = Executors.newScheduledThreadPool(rateLimitThreads, threadFactory("RateLimit"));
+        }
+        return rateLimitPool;
+    }
+
+    public static synchronized ScheduledExecutorService getGatewayPool() {
+        if (gatewayPool == null) {
+            gatewayPool = Executors.newScheduledThreadPool(gatewayThreads, threadFactory("Gateway"));
+        }
+        return gatewayPool;
+    }
+
+    public static synchronized void shutdown() {
+        for (ExecutorService pool : new ExecutorService[] { sharedCallbackPool, virtualCallbackPool, sharedEventPool, virtualEventPool, rateLimitPool, gatewayPool }) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        sharedCallbackPool = null;
+        virtualCallbackPool = null;
+        sharedEventPool = null;
+        virtualEventPool = null;
+        rateLimitPool = null;
+        gatewayPool = null;
+    }
+
+    /**
+     * Returns utilization statistics for any executor that JDA may be using, as a map.
+     */
+    public static MapTag describe(ExecutorService pool) {
+        MapTag result = new MapTag();
+        if (pool instanceof ThreadPoolExecutor executor) {
+            result.putObject("type", new ElementTag(executor instanceof ScheduledThreadPoolExecutor ? "scheduled" : "fixed"));
+            result.putObject("active", new ElementTag(executor.getActiveCount()));
+            result.putObject("threads", new ElementTag(executor.getPoolSize()));
+            result.putObject("largest_threads", new ElementTag(executor.getLargestPoolSize()));
+            result.putObject("max_threads", new ElementTag(executor.getMaximumPoolSize()));
+            result.putObject("queued", new ElementTag(executor.getQueue().size()));
+            result.putObject("completed", new ElementTag(executor.getCompletedTaskCount()));
+        }
+        else if (pool instanceof ForkJoinPool executor) {
+            result.putObject("type", new ElementTag("fork_join"));
+            result.putObject("active", new ElementTag(executor.getActiveThreadCount()));
+            result.putObject("threads", new ElementTag(executor.getPoolSize()));
+            result.putObject("max_threads", new ElementTag(executor.getParallelism()));
+            result.putObject("queued", new ElementTag(executor.getQueuedSubmissionCount() + executor.getQueuedTaskCount()));
+        }
+        else if (pool instanceof VirtualThreadExecutor executor) {
+            result.putObject("type", new ElementTag("virtual"));
+            result.putObject("active", new ElementTag(executor.active.get()));
+            result.putObject("largest_threads", new ElementTag(executor.largestActive.get()));
+            result.putObject("completed", new ElementTag(executor.completed.sum()));
+            result.putObject("submitted", new ElementTag(executor.submitted.sum()));
+        }
+        else {
+            result.putObject("type", new ElementTag(pool == null ? "none" : pool.getClass().getSimpleName()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.denizenscript.ddiscordbot;
+
+import net.dv8tion.jda.api.entities.Webhook;
+import net.dv8tion.jda.api.entities.channel.attribute.IWebhookContainer;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Tracks one bot-owned webhook per channel, for sending messages under a custom name and avatar.
+ * An existing webhook created by the bot is reused when available, otherwise a new one is created the first time a channel needs one.
+ * Each webhook has its own rate limit bucket, separate from the bot's own bucket for the channel.
+ */
+public class DiscordWebhookCache {
+
+    public static final String WEBHOOK_NAME = "dDiscordBot";
+
+    public DiscordConnection connection;
+
+    public final HashMap<Long, CompletableFuture<Webhook>> webhooks = new HashMap<>();
+
+    public DiscordWebhookCache(DiscordConnection connection) {
+        this.connection = connection;
+    }
+
+    public CompletableFuture<Webhook> getWebhook(IWebhookContainer channel) {
+        synchronized (webhooks) {
+            CompletableFuture<Webhook> result = webhooks.get(channel.getIdLong());
+            if (result != null && !result.isCompletedExceptionally()) {
+                return result;
+            }
+            long selfId = connection.client.getSelfUser().getIdLong();
+            result = channel.retrieveWebhooks().submit().thenCompose(existing -> {
+                for (Webhook webhook : existing) {
+                    if (webhook.getToken() != null && webhook.getOwnerAsUser() != null && webhook.getOwnerAsUser().getIdLong() == selfId) {
+                        return CompletableFuture.completedFuture(webhook);
+                    }
+                }
+                return channel.createWebhook(WEBHOOK_NAME).submit();
+            });
+            webhooks.put(channel.getIdLong(), result);
+            return result;
+        }
+    }
+
+    /**
+     * Forgets the cached webhook for a channel if the given error shows it no longer exists (eg it was deleted by a moderator), so the next send creates a new one.
+     */
+    public void invalidateIfUnknown(long channelId, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof ErrorResponseException response && response.getErrorResponse() == ErrorResponse.UNKNOWN_WEBHOOK) {
+            remove(channelId);
+        }
+    }
+
+    public void remove(long channelId) {
+        synchronized (webhooks) {
+            webhooks.remove(channelId);
+        }
+    }
+}
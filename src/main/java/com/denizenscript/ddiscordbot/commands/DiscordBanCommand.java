@@ -87,6 +87,6 @@ public class DiscordBanCommand extends AbstractCommand implements Holdable {
                 yield banAction;
             }
             case REMOVE -> group.getGuild().unban(userObj);
-        });
+        }, true);
     }
 }
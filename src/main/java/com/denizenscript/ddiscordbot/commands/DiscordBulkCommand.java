@@ -0,0 +1,161 @@
+package com.denizenscript.ddiscordbot.commands;
+
+import com.denizenscript.ddiscordbot.DiscordBulkJob;
+import com.denizenscript.ddiscordbot.DiscordCommandUtils;
+import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.objects.DiscordBotTag;
+import com.denizenscript.ddiscordbot.objects.DiscordGroupTag;
+import com.denizenscript.ddiscordbot.objects.DiscordRoleTag;
+import com.denizenscript.ddiscordbot.objects.DiscordUserTag;
+import com.denizenscript.denizencore.exceptions.InvalidArgumentsRuntimeException;
+import com.denizenscript.denizencore.objects.core.DurationTag;
+import com.denizenscript.denizencore.scripts.ScriptEntry;
+import com.denizenscript.denizencore.scripts.commands.AbstractCommand;
+import com.denizenscript.denizencore.scripts.commands.Holdable;
+import com.denizenscript.denizencore.scripts.commands.generator.*;
+import com.denizenscript.denizencore.utilities.CoreUtilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DiscordBulkCommand extends AbstractCommand implements Holdable {
+
+    public DiscordBulkCommand() {
+        setName("discordbulk");
+        setSyntax("discordbulk (id:<bot>) [start/pause/resume/cancel] [job:<name>] (group:<group>) (users:<user>|...) (action:<action>) (role:<role>) (value:<text>) (duration:<duration>/{60s}) (concurrency:<#>/{2})");
+        setRequiredArguments(2, 10);
+        isProcedural = false;
+        autoCompile();
+    }
+
+    // <--[command]
+    // @Name discordbulk
+    // @Syntax discordbulk (id:<bot>) [start/pause/resume/cancel] [job:<name>] (group:<group>) (users:<user>|...) (action:<action>) (role:<role>) (value:<text>) (duration:<duration>/{60s}) (concurrency:<#>/{2})
+    // @Required 2
+    // @Maximum 10
+    // @Short Applies a member action to a large list of users in the background.
+    // @Plugin dDiscordBot
+    // @Guide https://guide.denizenscript.com/guides/expanding/ddiscordbot.html
+    // @Group external
+    //
+    // @Description
+    // Applies a member action to a large list of users in the background, as a named job.
+    // This is much friendlier to both your server and Discord than looping over each user with a separate command.
+    //
+    // Use "start" with a job name, a group, a list of users, and an action, to begin a new job.
+    // The action can be any of: ADD_ROLE, REMOVE_ROLE (both require "role"), NICKNAME (requires "value" as the new nickname),
+    // TIMEOUT (uses "duration", defaulting to 60 seconds), or REMOVE_TIMEOUT.
+    //
+    // Only "concurrency" requests (defaults to 2) are in progress at any time, and Discord's rate limits for the group pace the rest.
+    //
+    // Use "pause", "resume", and "cancel" with the job name to control a running job.
+    // Progress is saved to a checkpoint file under 'plugins/dDiscordBot/bulk_jobs' while the job runs, and whenever it is paused or the bot disconnects.
+    // If the server restarts before a job finishes, "resume" will reload the job from its checkpoint file and continue where it left off.
+    // Note that a few users processed right before the checkpoint was written may be processed again.
+    // If the group or role is deleted while a job runs, the job is paused (keeping its checkpoint) rather than failing every remaining user.
+    //
+    // When "start" or "resume" is ~waited for, the command will wait until the whole job is finished or cancelled.
+    //
+    // @Tags
+    // <DiscordBotTag.bulk_job[<name>]> returns the progress of a bulk job.
+    //
+    // @Usage
+    // Use to remove a seasonal role from every member that has it.
+    // - discordbulk id:mybot start job:season_reset group:<[group]> users:<[role].users> action:remove_role role:<[role]>
+    //
+    // @Usage
+    // Use to pause and later resume a job.
+    // - discordbulk id:mybot pause job:season_reset
+    // - wait 10m
+    // - discordbulk id:mybot resume job:season_reset
+    //
+    // @Usage
+    // Use to check the progress of a job.
+    // - narrate "<discord[mybot].bulk_job[season_reset].get[completed]> of <discord[mybot].bulk_job[season_reset].get[total]> done."
+    // -->
+
+    public enum DiscordBulkInstruction { START, PAUSE, RESUME, CANCEL }
+
+    public static void checkTarget(DiscordBulkJob job) {
+        String error = job.getTargetError();
+        if (error != null) {
+            throw new InvalidArgumentsRuntimeException("Cannot run bulk job '" + job.name + "': " + error + ".");
+        }
+    }
+
+    public static void autoExecute(ScriptEntry scriptEntry,
+                                   @ArgPrefixed @ArgName("id") @ArgDefaultNull DiscordBotTag bot,
+                                   @ArgName("instruction") DiscordBulkInstruction instruction,
+                                   @ArgPrefixed @ArgName("job") String jobName,
+                                   @ArgPrefixed @ArgName("group") @ArgDefaultNull DiscordGroupTag group,
+                                   @ArgPrefixed @ArgName("users") @ArgDefaultNull @ArgSubType(DiscordUserTag.class) List<DiscordUserTag> users,
+                                   @ArgPrefixed @ArgName("action") @ArgDefaultNull DiscordBulkJob.Action action,
+                                   @ArgPrefixed @ArgName("role") @ArgDefaultNull DiscordRoleTag role,
+                                   @ArgPrefixed @ArgName("value") @ArgDefaultNull String value,
+                                   @ArgPrefixed @ArgName("duration") @ArgDefaultText("60s") DurationTag duration,
+                                   @ArgPrefixed @ArgName("concurrency") @ArgDefaultText("2") int concurrency) {
+        bot = DiscordCommandUtils.inferBot(bot, group, role, users);
+        DiscordConnection connection = bot.getConnection();
+        String name = CoreUtilities.toLowerCase(jobName);
+        DiscordBulkJob job = connection.bulkJobs.get(name);
+        switch (instruction) {
+            case START -> {
+                if (job != null && (job.status == DiscordBulkJob.Status.RUNNING || job.status == DiscordBulkJob.Status.PAUSED)) {
+                    throw new InvalidArgumentsRuntimeException("A bulk job named '" + name + "' already exists. Cancel it first, or pick a different name.");
+                }
+                if (group == null || users == null || action == null) {
+                    throw new InvalidArgumentsRuntimeException("Must specify a group, users, and action to start a bulk job.");
+                }
+                if ((action == DiscordBulkJob.Action.ADD_ROLE || action == DiscordBulkJob.Action.REMOVE_ROLE) && role == null) {
+                    throw new InvalidArgumentsRuntimeException("Must specify a role for role actions.");
+                }
+                if (action == DiscordBulkJob.Action.NICKNAME && value == null) {
+                    throw new InvalidArgumentsRuntimeException("Must specify a value for the nickname action.");
+                }
+                if (concurrency < 1) {
+                    throw new InvalidArgumentsRuntimeException("Concurrency must be at least 1.");
+                }
+                job = new DiscordBulkJob(connection, name);
+                job.guildId = group.guild_id;
+                job.action = action;
+                job.roleId = role == null ? 0 : role.role_id;
+                job.value = value;
+                job.durationSeconds = duration.getSecondsAsInt();
+                job.concurrency = concurrency;
+                List<Long> userIds = new ArrayList<>(users.size());
+                for (DiscordUserTag user : users) {
+                    userIds.add(user.user_id);
+                }
+                job.setUsers(userIds);
+                checkTarget(job);
+                connection.bulkJobs.put(name, job);
+                job.start();
+                DiscordCommandUtils.cleanWait(scriptEntry, job.completion);
+            }
+            case RESUME -> {
+                if (job == null || job.status == DiscordBulkJob.Status.CANCELLED || job.status == DiscordBulkJob.Status.FINISHED) {
+                    job = DiscordBulkJob.loadCheckpoint(connection, name);
+                    if (job == null) {
+                        throw new InvalidArgumentsRuntimeException("No bulk job or checkpoint named '" + name + "' exists.");
+                    }
+                }
+                checkTarget(job);
+                connection.bulkJobs.put(name, job);
+                job.start();
+                DiscordCommandUtils.cleanWait(scriptEntry, job.completion);
+            }
+            case PAUSE, CANCEL -> {
+                if (job == null) {
+                    throw new InvalidArgumentsRuntimeException("No bulk job named '" + name + "' exists.");
+                }
+                if (instruction == DiscordBulkInstruction.PAUSE) {
+                    job.pause();
+                }
+                else {
+                    job.cancel();
+                }
+                scriptEntry.setFinished(true);
+            }
+        }
+    }
+}
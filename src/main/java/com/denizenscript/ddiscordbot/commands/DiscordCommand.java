@@ -1,6 +1,7 @@
 package com.denizenscript.ddiscordbot.commands;
 
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
+import com.denizenscript.ddiscordbot.DiscordCommandUtils;
 import com.denizenscript.ddiscordbot.DiscordConnection;
 import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.denizen.Denizen;
@@ -17,10 +18,11 @@ import com.denizenscript.denizencore.utilities.CoreUtilities;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.*;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
-import org.bukkit.Bukkit;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -199,10 +201,9 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                             return;
                         }
                         DiscordConnection dc = DenizenDiscordBot.instance.connections.remove(id);
-                        if (dc.flags.modified) {
-                            dc.flags.saveToFile(DiscordConnectCommand.flagFilePathFor(id));
-                        }
-                        dc.client.shutdown();
+                        dc.pauseBulkJobs();
+                        dc.flagSaver.saveAndClose(true);
+                        dc.shutdown(false);
                         scriptEntry.setFinished(true);
                         break;
                     }
@@ -218,66 +219,76 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                         if (requireClientID.get() || requireMessage.get()) {
                             return;
                         }
-                        JDA client = DenizenDiscordBot.instance.connections.get(id).client;
+                        DiscordConnection connection = DenizenDiscordBot.instance.connections.get(id);
+                        JDA client = connection.client;
                         if (requireClientObject.apply(client)) {
                             return;
                         }
-                        MessageChannel textChan;
+                        CompletableFuture<? extends MessageChannel> textChan;
                         if (channel == null) {
-                            User userObj = client.getUserById(user.user_id);
-                            if (userObj == null) {
-                                Debug.echoError(scriptEntry, "Invalid or unrecognized user (given user ID not valid? Have you enabled the 'members' intent?).");
+                            textChan = connection.openPrivateChannel(user.user_id);
+                        }
+                        else {
+                            long channelId = channel.channel_id;
+                            TextChannel found = connection.fromShards(shard -> shard.getTextChannelById(channelId));
+                            if (found == null) {
+                                Debug.echoError(scriptEntry, "No channel to send message to (channel ID invalid, or not a text channel?).");
                                 scriptEntry.setFinished(true);
                                 return;
                             }
-                            textChan = userObj.openPrivateChannel().complete();
-                        }
-                        else {
-                            textChan = client.getTextChannelById(channel.channel_id);
-                        }
-                        if (textChan == null) {
-                            Debug.echoError(scriptEntry, "No channel to send message to (channel ID invalid, or not a text channel?).");
-                            scriptEntry.setFinished(true);
-                            return;
-                        }
-                        Message sentMessage;
-                        if (message.startsWith("discordembed@")) {
-                            MessageEmbed embed = DiscordEmbedTag.valueOf(message, scriptEntry.context).build(scriptEntry.context).build();
-                            sentMessage = textChan.sendMessageEmbeds(embed).complete();
-                        }
-                        else {
-                            sentMessage = textChan.sendMessage(message).complete();
+                            textChan = CompletableFuture.completedFuture(found);
                         }
-                        scriptEntry.saveObject("message_id", new ElementTag(sentMessage.getId()));
-                        scriptEntry.setFinished(true);
+                        MessageEmbed embed = message.startsWith("discordembed@") ? DiscordEmbedTag.valueOf(message, scriptEntry.context).build(scriptEntry.context).build() : null;
+                        DiscordCommandUtils.cleanWait(scriptEntry, textChan.thenCompose(c -> DiscordCommandUtils.submit(connection, embed != null ? c.sendMessageEmbeds(embed) : c.sendMessage(message), false))
+                                .thenAccept(sentMessage -> scriptEntry.saveObject("message_id", new ElementTag(sentMessage.getId()))));
                         break;
                     }
                     case ADD_ROLE: {
                         if (requireClientID.get() || requireUser.get() || requireGuild.get() || requireRole.get()) {
                             return;
                         }
-                        JDA client = DenizenDiscordBot.instance.connections.get(id).client;
+                        DiscordConnection connection = DenizenDiscordBot.instance.connections.get(id);
+                        JDA client = connection.client;
                         if (requireClientObject.apply(client)) {
                             return;
                         }
-                        Guild guildObj = client.getGuildById(guild.guild_id);
-                        Member memberObj = guildObj.getMemberById(user.user_id);
-                        guildObj.addRoleToMember(memberObj, guildObj.getRoleById(role.role_id)).complete();
-                        scriptEntry.setFinished(true);
+                        Guild guildObj = connection.getGuildById(guild.guild_id);
+                        if (guildObj == null) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown group!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
+                        Role roleObj = guildObj.getRoleById(role.role_id);
+                        if (roleObj == null) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown role!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
+                        DiscordCommandUtils.cleanWait(scriptEntry, guildObj.addRoleToMember(UserSnowflake.fromId(user.user_id), roleObj), true);
                         break;
                     }
                     case REMOVE_ROLE: {
                         if (requireClientID.get() || requireUser.get() || requireRole.get() || requireGuild.get()) {
                             return;
                         }
-                        JDA client = DenizenDiscordBot.instance.connections.get(id).client;
+                        DiscordConnection connection = DenizenDiscordBot.instance.connections.get(id);
+                        JDA client = connection.client;
                         if (requireClientObject.apply(client)) {
                             return;
                         }
-                        Guild guildObj = client.getGuildById(guild.guild_id);
-                        Member memberObj = guildObj.getMemberById(user.user_id);
-                        guildObj.removeRoleFromMember(memberObj, guildObj.getRoleById(role.role_id)).complete();
-                        scriptEntry.setFinished(true);
+                        Guild guildObj = connection.getGuildById(guild.guild_id);
+                        if (guildObj == null) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown group!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
+                        Role roleObj = guildObj.getRoleById(role.role_id);
+                        if (roleObj == null) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown role!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
+                        DiscordCommandUtils.cleanWait(scriptEntry, guildObj.removeRoleFromMember(UserSnowflake.fromId(user.user_id), roleObj), true);
                         break;
                     }
                     case EDIT_MESSAGE: {
@@ -289,15 +300,18 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                         if (requireClientObject.apply(connection == null ? null : connection.client)) {
                             return;
                         }
-                        MessageChannel textChannel = (MessageChannel) connection.getChannel(channel.channel_id);
+                        if (!(connection.getChannel(channel.channel_id) instanceof MessageChannel textChannel)) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown channel!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
                         if (message.startsWith("discordembed@")) {
                             MessageEmbed embed = DiscordEmbedTag.valueOf(message, scriptEntry.context).build(scriptEntry.context).build();
-                            textChannel.editMessageEmbedsById(messageId.asLong(), embed).complete();
+                            DiscordCommandUtils.cleanWait(scriptEntry, textChannel.editMessageEmbedsById(messageId.asLong(), embed), true);
                         }
                         else {
-                            textChannel.editMessageById(messageId.asLong(), message).complete();
+                            DiscordCommandUtils.cleanWait(scriptEntry, textChannel.editMessageById(messageId.asLong(), message), true);
                         }
-                        scriptEntry.setFinished(true);
                         break;
                     }
                     case DELETE_MESSAGE: {
@@ -309,8 +323,12 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                         if (requireClientObject.apply(connection == null ? null : connection.client)) {
                             return;
                         }
-                        ((MessageChannel) connection.getChannel(channel.channel_id)).deleteMessageById(messageId.asLong()).complete();
-                        scriptEntry.setFinished(true);
+                        if (!(connection.getChannel(channel.channel_id) instanceof MessageChannel textChannel)) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown channel!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
+                        DiscordCommandUtils.cleanWait(scriptEntry, textChannel.deleteMessageById(messageId.asLong()));
                         break;
                     }
                     case START_TYPING: {
@@ -321,9 +339,12 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                         if (requireClientObject.apply(connection == null ? null : connection.client)) {
                             return;
                         }
-                        MessageChannel textChannel = (MessageChannel) connection.getChannel(channel.channel_id);
-                        textChannel.sendTyping().complete();
-                        scriptEntry.setFinished(true);
+                        if (!(connection.getChannel(channel.channel_id) instanceof MessageChannel textChannel)) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown channel!");
+                            scriptEntry.setFinished(true);
+                            return;
+                        }
+                        DiscordCommandUtils.cleanWait(scriptEntry, textChannel.sendTyping(), true);
                         break;
                     }
                     case STOP_TYPING: {
@@ -343,26 +364,28 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                         if (requireClientID.get() || requireGuild.get() || requireMessage.get()) {
                             return;
                         }
-                        JDA client = DenizenDiscordBot.instance.connections.get(id).client;
+                        DiscordConnection connection = DenizenDiscordBot.instance.connections.get(id);
+                        JDA client = connection.client;
                         if (requireClientObject.apply(client)) {
                             return;
                         }
-                        long userId;
-                        if (user == null) {
-                            userId = client.getSelfUser().getIdLong();
-                        }
-                        else {
-                            userId = user.user_id;
+                        Guild guildObj = connection.getGuildById(guild.guild_id);
+                        if (guildObj == null) {
+                            Debug.echoError(scriptEntry, "Failed to process Discord " + instruction + " command: unknown group!");
+                            scriptEntry.setFinished(true);
+                            return;
                         }
-                        client.getGuildById(guild.guild_id).getMemberById(userId).modifyNickname(message).complete();
-                        scriptEntry.setFinished(true);
+                        Member memberObj = user == null ? guildObj.getSelfMember() : guildObj.getMemberById(user.user_id);
+                        DiscordCommandUtils.cleanWait(scriptEntry, memberObj != null ? memberObj.modifyNickname(message)
+                                : guildObj.retrieveMemberById(user.user_id).flatMap(m -> m.modifyNickname(message)), true);
                         break;
                     }
                     case STATUS: {
                         if (requireClientID.get()) {
                             return;
                         }
-                        JDA client = DenizenDiscordBot.instance.connections.get(id).client;
+                        DiscordConnection connection = DenizenDiscordBot.instance.connections.get(id);
+                        JDA client = connection.client;
                         if (requireClientObject.apply(client)) {
                             return;
                         }
@@ -398,7 +421,9 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                                 statusType = OnlineStatus.ONLINE;
                                 break;
                         }
-                        client.getPresence().setPresence(statusType, at);
+                        for (JDA shard : connection.getShards()) {
+                            shard.getPresence().setPresence(statusType, at);
+                        }
                         scriptEntry.setFinished(true);
                         break;
                     }
@@ -409,11 +434,7 @@ public class DiscordCommand extends AbstractCommand implements Holdable {
                 scriptEntry.setFinished(true);
             }
         };
-        if (scriptEntry.shouldWaitFor()) {
-            Bukkit.getScheduler().runTaskAsynchronously(DenizenDiscordBot.instance, executeCore);
-        }
-        else {
-            executeCore.run();
-        }
+        // Every request is submitted rather than waited on, so this never blocks, whether or not the command is ~waited for.
+        executeCore.run();
     }
 }
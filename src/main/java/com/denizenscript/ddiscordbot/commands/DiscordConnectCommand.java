@@ -1,7 +1,16 @@
 package com.denizenscript.ddiscordbot.commands;
 
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
+import com.denizenscript.ddiscordbot.DiscordCommandUtils;
 import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.DiscordEventFilter;
+import com.denizenscript.ddiscordbot.DiscordFlagSaver;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
+import com.denizenscript.ddiscordbot.DiscordScriptEvent;
+import com.denizenscript.ddiscordbot.DiscordThreadPools;
+import com.denizenscript.ddiscordbot.events.DiscordBotReadyScriptEvent;
+import com.denizenscript.ddiscordbot.objects.DiscordChannelTag;
+import com.denizenscript.ddiscordbot.objects.DiscordGroupTag;
 import com.denizenscript.denizen.Denizen;
 import com.denizenscript.denizen.utilities.Utilities;
 import com.denizenscript.denizencore.DenizenCore;
@@ -15,26 +24,39 @@ import com.denizenscript.denizencore.scripts.ScriptEntry;
 import com.denizenscript.denizencore.scripts.commands.AbstractCommand;
 import com.denizenscript.denizencore.scripts.commands.Holdable;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgDefaultNull;
+import com.denizenscript.denizencore.scripts.commands.generator.ArgDefaultText;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgName;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgPrefixed;
+import com.denizenscript.denizencore.scripts.commands.generator.ArgSubType;
 import com.denizenscript.denizencore.utilities.CoreConfiguration;
 import com.denizenscript.denizencore.utilities.CoreUtilities;
 import com.denizenscript.denizencore.utilities.ReflectionHelper;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.ShutdownEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.ConcurrentSessionController;
 import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.dv8tion.jda.internal.utils.JDALogger;
 import org.bukkit.Bukkit;
 import org.slf4j.Logger;
 
+import javax.annotation.Nonnull;
 import java.io.*;
 import java.lang.invoke.MethodHandle;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class DiscordConnectCommand extends AbstractCommand implements Holdable {
 
@@ -43,17 +65,17 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
     public DiscordConnectCommand() {
         instance = this;
         setName("discordconnect");
-        setSyntax("discordconnect [id:<id>] [token:<secret>] (intents:<intent>|...)");
-        setRequiredArguments(2, 3);
+        setSyntax("discordconnect [id:<id>] [token:<secret>] (intents:<intent>|...) (shards:<#>) (member_cache:{all}/online/voice/lru/none) (member_cache_size:<#>/{10000}) (member_groups:<group>|...) (allow_groups:<group>|...) (deny_groups:<group>|...) (allow_channels:<channel>|...) (deny_channels:<channel>|...) (thread_pools:{default}/shared/virtual)");
+        setRequiredArguments(2, 12);
         isProcedural = false;
         autoCompile();
     }
 
     // <--[command]
     // @Name discordconnect
-    // @Syntax discordconnect [id:<id>] [token:<secret>] (intents:<intent>|...)
+    // @Syntax discordconnect [id:<id>] [token:<secret>] (intents:<intent>|...) (shards:<#>) (member_cache:{all}/online/voice/lru/none) (member_cache_size:<#>/{10000}) (member_groups:<group>|...) (allow_groups:<group>|...) (deny_groups:<group>|...) (allow_channels:<channel>|...) (deny_channels:<channel>|...) (thread_pools:{default}/shared/virtual)
     // @Required 2
-    // @Maximum 3
+    // @Maximum 12
     // @Short Connects to Discord.
     // @Plugin dDiscordBot
     // @Guide https://guide.denizenscript.com/guides/expanding/ddiscordbot.html
@@ -69,13 +91,50 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
     //
     // use "intents:clear|SOME_INTENT|etc" (ie the first entry as "clear") to clear out default intents and use only your manually specified choices.
     //
+    // Alternately, use "intents:auto" (optionally followed by extra intents, like "intents:auto|GUILD_PRESENCES") to only use the intents needed by the Discord events your scripts actually use,
+    // (for example, GUILD_MESSAGE_REACTIONS is only used if a script has a <@link event discord message reaction added> event),
+    // along with whatever the "member_cache" option needs. Only the caches those intents allow are enabled.
+    // This can substantially reduce the traffic Discord sends the bot, and the memory used to cache it.
+    // When scripts are reloaded and the set of needed intents changes, the bot will automatically reconnect with the new set.
+    // Interactions received before such a reconnect can no longer be replied to once it completes, so avoid reloading scripts while a reply is still pending.
+    // Note that some tags need an intent that no event implies, such as <@link tag DiscordUserTag.status> (GUILD_PRESENCES) or custom emoji tags (GUILD_EMOJIS_AND_STICKERS),
+    // so add those to the list manually if you use them.
+    //
     // Note that you need to enable the 'members' and 'message content' intent on your bot in Discord bot settings https://discord.com/developers/applications
     // And also may need to manually enable other intents if you specify any.
     // If the members intent is not enabled, a significant amount of dDiscordBot's functionality will not work.
     //
+    // For bots in a very large number of groups, optionally specify "shards:<#>" to split the bot's connection into that many shards (separate gateway connections),
+    // or "shards:-1" to use the number of shards recommended by Discord. Discord requires sharding once a bot is in 2500 or more groups.
+    // Shards are started as quickly as Discord allows, and events from every shard are handled the same as for a single connection.
+    // See <@link tag DiscordBotTag.shard_stats> to check on individual shards.
+    //
+    // By default, every member of every group is loaded when the bot connects, and kept in memory. For bots in large groups, this can take a long time and a lot of memory.
+    // Optionally specify "member_cache" to only keep some members in memory:
+    // "online" keeps members that are currently online (this automatically adds the GUILD_PRESENCES intent, which must be enabled in your bot's settings),
+    // "voice" keeps members that are connected to a voice channel (this automatically adds the GUILD_VOICE_STATES intent),
+    // "lru" keeps the most recently active members, up to "member_cache_size" members (defaults to 10000),
+    // and "none" doesn't keep any members.
+    // Optionally specify "member_groups" as a list of groups that should still have all their members loaded and kept regardless of the mode.
+    // When a member isn't cached, use <@link command discordmember> to look them up from Discord first. They are then remembered for a short time, so tags that need them (like <@link tag DiscordUserTag.roles>) work.
+    // Tags that list members (like <@link tag DiscordGroupTag.members>) only list the cached members.
+    //
+    // For bots in groups where only some groups or channels matter, optionally specify "allow_groups" and/or "deny_groups" as lists of groups,
+    // and "allow_channels" and/or "deny_channels" as lists of channels (a thread is allowed or denied along with its parent channel).
+    // When an allow list is given, only the listed groups or channels are used. Anything denied is always ignored.
+    // Members of ignored groups are never loaded or cached, and events in ignored groups or channels are dropped right away, without being cached or fired to scripts.
+    // Direct messages are never ignored. See <@link tag DiscordBotTag.dropped_events> to check how many events were dropped.
+    //
+    // By default, each bot (and each shard) starts its own set of threads for talking to Discord, most of which sit idle.
+    // When running several bots, optionally specify "thread_pools:shared" to have every bot with that option use one shared set of thread pools instead,
+    // or "thread_pools:virtual" to also run request callbacks (and events, if the event pool is enabled) on virtual threads (requires Java 21 or newer).
+    // The size of the shared pools is set in the dDiscordBot config. See <@link tag DiscordBotTag.thread_pool_stats> to check how busy the pools are.
+    //
     // Store your Discord bot token in the Denizen secrets file at 'plugins/Denizen/secrets.secret'. Refer to <@link ObjectType SecretTag> for usage info.
     //
     // The command should usually be ~waited for. See <@link language ~waitable>.
+    // When connecting several bots, you may instead run the commands without waiting, so that all bots connect at the same time,
+    // and use <@link event discord bot ready> or <@link tag DiscordBotTag.is_ready> to know when each bot is ready.
     //
     // @Tags
     // <discord[<bot_id>]>
@@ -85,6 +144,22 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
     // - ~discordconnect id:mybot token:<secret[discord_bot_token]>
     // - discordmessage id:mybot channel:<[my_log_channel]> "Connected!"
     //
+    // @Usage
+    // Use to connect a large bot with the number of shards Discord recommends.
+    // - ~discordconnect id:mybot token:<secret[discord_bot_token]> shards:-1
+    //
+    // @Usage
+    // Use to connect with only the intents your scripts need, plus presences for status tags.
+    // - ~discordconnect id:mybot token:<secret[discord_bot_token]> intents:auto|GUILD_PRESENCES
+    //
+    // @Usage
+    // Use to connect a bot that only cares about two channels in a large community group.
+    // - ~discordconnect id:mybot token:<secret[discord_bot_token]> allow_groups:<[community_group]> allow_channels:<[support_channel]>|<[bot_channel]>
+    //
+    // @Usage
+    // Use to connect without loading every member, except for the members of the bot's home group.
+    // - ~discordconnect id:mybot token:<secret[discord_bot_token]> member_cache:lru member_groups:<[home_group]>
+    //
     // -->
 
     public static boolean loggerIsFixed = false;
@@ -133,59 +208,425 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
     public static HashSet<GatewayIntent> defaultIntents = new HashSet<>(Arrays.asList(GatewayIntent.GUILD_MEMBERS, GatewayIntent.GUILD_EMOJIS_AND_STICKERS, GatewayIntent.GUILD_MESSAGE_REACTIONS,
             GatewayIntent.GUILD_MESSAGES, GatewayIntent.DIRECT_MESSAGE_REACTIONS, GatewayIntent.DIRECT_MESSAGES, GatewayIntent.MESSAGE_CONTENT));
 
-    public static void runConnect(String code, DiscordConnection conn, ScriptEntry scriptEntry, HashSet<GatewayIntent> intents) {
+    /**
+     * Builds the JDA instance, and returns a future that completes once it is ready, without blocking a thread while the gateway connects and members are chunked.
+     */
+    public static CompletableFuture<ReadyEvent> buildAndListen(DiscordConnection conn, JDABuilder builder) {
+        CompletableFuture<ReadyEvent> ready = new CompletableFuture<>();
+        builder.addEventListeners(new ListenerAdapter() {
+            @Override
+            public void onReady(@Nonnull ReadyEvent event) {
+                event.getJDA().removeEventListener(this);
+                ready.complete(event);
+            }
+
+            @Override
+            public void onShutdown(@Nonnull ShutdownEvent event) {
+                ready.completeExceptionally(new IllegalStateException("Discord connection closed before it was ready (close code: " + event.getCloseCode() + ")."));
+            }
+        });
+        // Hack to bypass Paper whining about JDA whining into System.err
+        PrintStream currentErr = System.err;
+        System.setErr(altLogger);
         try {
-            try {
-                // Try with intents
-                JDA jda;
-                // Hack to bypass Paper whining about JDA whining into System.err
-                PrintStream currentErr = System.err;
-                System.setErr(altLogger);
-                try {
-                    jda = JDABuilder.createDefault(code)
-                            .enableCache(Arrays.stream(CacheFlag.values()).filter(f -> f.getRequiredIntent() == null || intents.contains(f.getRequiredIntent())).collect(Collectors.toList()))
-                            .enableIntents(intents)
-                            .setMemberCachePolicy(MemberCachePolicy.ALL)
-                            .setAutoReconnect(true)
-                            .setLargeThreshold(100000)
-                            .setChunkingFilter(ChunkingFilter.ALL)
-                            .build();
+            conn.client = builder.build();
+        }
+        catch (Throwable ex) {
+            ready.completeExceptionally(ex);
+        }
+        finally {
+            System.setErr(currentErr);
+        }
+        return ready;
+    }
+
+    /**
+     * Builds a shard manager, and returns a future that completes once every shard is ready.
+     * The shards are started by JDA's session controller, which follows the bot's session start concurrency limit from Discord.
+     */
+    public static CompletableFuture<ReadyEvent> buildShardsAndListen(DiscordConnection conn, DefaultShardManagerBuilder builder) {
+        CompletableFuture<ReadyEvent> ready = new CompletableFuture<>();
+        AtomicInteger readyShards = new AtomicInteger();
+        builder.addEventListeners(new ListenerAdapter() {
+            @Override
+            public void onReady(@Nonnull ReadyEvent event) {
+                JDA.ShardInfo shard = event.getJDA().getShardInfo();
+                if (shard.getShardId() == 0) {
+                    conn.client = event.getJDA();
+                }
+                if (readyShards.incrementAndGet() >= shard.getShardTotal()) {
+                    event.getJDA().getShardManager().removeEventListener(this);
+                    ready.complete(event);
                 }
-                finally {
-                    System.setErr(currentErr);
+            }
+
+            @Override
+            public void onShutdown(@Nonnull ShutdownEvent event) {
+                ready.completeExceptionally(new IllegalStateException("Discord shard " + event.getJDA().getShardInfo().getShardId() + " closed before it was ready (close code: " + event.getCloseCode() + ")."));
+            }
+        });
+        PrintStream currentErr = System.err;
+        System.setErr(altLogger);
+        try {
+            conn.shardManager = builder.setSessionController(new ConcurrentSessionController()).build();
+        }
+        catch (Throwable ex) {
+            ready.completeExceptionally(ex);
+        }
+        finally {
+            System.setErr(currentErr);
+        }
+        return ready;
+    }
+
+    public enum MemberCacheMode { ALL, ONLINE, VOICE, LRU, NONE }
+
+    /**
+     * Settings for how a bot connects, as given to the discordconnect command.
+     */
+    public static class ConnectOptions {
+
+        public String token;
+
+        public HashSet<GatewayIntent> intents;
+
+        /**
+         * If true, 'intents' is computed from the Discord script events in use (plus 'extraIntents'), and is recomputed when scripts reload.
+         */
+        public boolean autoIntents = false;
+
+        public HashSet<GatewayIntent> extraIntents = new HashSet<>();
+
+        /**
+         * 0 means no sharding, and -1 means Discord's recommended count.
+         */
+        public int shards = 0;
+
+        public MemberCacheMode memberCache = MemberCacheMode.ALL;
+
+        public int memberCacheSize = 10000;
+
+        /**
+         * Groups whose members are always fully loaded and cached, regardless of the member cache mode.
+         */
+        public long[] memberGroups = new long[0];
+
+        /**
+         * The group and channel filter, or null if everything is allowed.
+         */
+        public DiscordEventFilter filter;
+
+        public DiscordThreadPools.Mode threadPools = DiscordThreadPools.Mode.DEFAULT;
+
+        public MemberCachePolicy getMemberCachePolicy() {
+            MemberCachePolicy policy = switch (memberCache) {
+                case ALL -> MemberCachePolicy.ALL;
+                case ONLINE -> MemberCachePolicy.ONLINE;
+                case VOICE -> MemberCachePolicy.VOICE;
+                case LRU -> MemberCachePolicy.lru(memberCacheSize);
+                case NONE -> MemberCachePolicy.NONE;
+            };
+            if (memberGroups.length > 0 && memberCache != MemberCacheMode.ALL) {
+                HashSet<Long> groups = new HashSet<>();
+                for (long group : memberGroups) {
+                    groups.add(group);
                 }
-                conn.client = jda;
-                jda.awaitReady();
+                policy = policy.or(member -> groups.contains(member.getGuild().getIdLong()));
             }
-            catch (Exception ex) {
-                if (CoreConfiguration.debugVerbose) {
-                    Debug.echoError(scriptEntry, ex);
+            if (filter != null) {
+                DiscordEventFilter groupFilter = filter;
+                policy = policy.and(member -> groupFilter.allowsGroup(member.getGuild().getIdLong()));
+            }
+            return policy;
+        }
+
+        public void addMemberCacheIntents(Set<GatewayIntent> intents) {
+            if (memberCache == MemberCacheMode.ONLINE) {
+                intents.add(GatewayIntent.GUILD_PRESENCES);
+            }
+            else if (memberCache == MemberCacheMode.VOICE) {
+                intents.add(GatewayIntent.GUILD_VOICE_STATES);
+            }
+        }
+
+        public HashSet<GatewayIntent> computeAutoIntents() {
+            HashSet<GatewayIntent> result = new HashSet<>(DiscordScriptEvent.getIntentsInUse());
+            result.add(GatewayIntent.GUILDS);
+            // Loading members at all requires the members intent.
+            if (memberCache != MemberCacheMode.NONE || memberGroups.length > 0) {
+                result.add(GatewayIntent.GUILD_MEMBERS);
+            }
+            addMemberCacheIntents(result);
+            result.addAll(extraIntents);
+            return result;
+        }
+
+        /**
+         * Returns every cache flag that is usable with the current intents.
+         */
+        public EnumSet<CacheFlag> getCacheFlags() {
+            EnumSet<CacheFlag> result = EnumSet.noneOf(CacheFlag.class);
+            for (CacheFlag flag : CacheFlag.values()) {
+                if (flag.getRequiredIntent() == null || intents.contains(flag.getRequiredIntent())) {
+                    result.add(flag);
                 }
-                Debug.echoError(scriptEntry, "Discord full connection attempt failed.");
-                Debug.log("Discord using fallback connection path - connecting with intents disabled. Enable the members intent in your bot's settings (at https://discord.com/developers/applications ) to fix this.");
-                // If startup failure, try without intents
-                JDA jda = JDABuilder.createDefault(code).build();
-                conn.client = jda;
-                jda.awaitReady();
             }
-            conn.registerHandlers();
+            return result;
         }
-        catch (Exception ex) {
-            Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> {
-                DenizenDiscordBot.instance.connections.remove(conn.botID);
-                Debug.echoError(ex);
-            });
+
+        public ChunkingFilter getChunkingFilter() {
+            ChunkingFilter chunking;
+            if (memberCache == MemberCacheMode.ALL) {
+                chunking = ChunkingFilter.ALL;
+            }
+            else {
+                chunking = memberGroups.length > 0 ? ChunkingFilter.include(memberGroups) : ChunkingFilter.NONE;
+            }
+            if (filter == null) {
+                return chunking;
+            }
+            DiscordEventFilter groupFilter = filter;
+            return id -> groupFilter.allowsGroup(id) && chunking.filter(id);
         }
-        String file = flagFilePathFor(conn.botID);
-        if (!new File(file + ".dat").exists() && new File(file + ".dat.dat").exists()) { // Patch prior mistake of filename
-            new File(file + ".dat.dat").renameTo(new File(file + ".dat"));
+
+        /**
+         * When every member is cached, groups are never considered 'large', so that offline members are sent too.
+         */
+        public int getLargeThreshold() {
+            return memberCache == MemberCacheMode.ALL ? 100000 : 250;
         }
-        DenizenCore.runOnMainThread(() -> {
-            conn.flags = SavableMapFlagTracker.loadFlagFile(file, true);
-            scriptEntry.setFinished(true);
+    }
+
+    /**
+     * Gives the shared thread pools for the mode to a builder, through its setters (as JDA and shard manager builders share no common type).
+     * Does nothing for the default mode, leaving JDA to create its own pools.
+     * The setters must tell JDA not to shut the pools down, as other bots may still be using them.
+     */
+    public static void applyThreadPools(DiscordThreadPools.Mode mode, Consumer<ExecutorService> setCallbackPool, Consumer<ScheduledExecutorService> setRateLimitPool,
+                                        Consumer<ScheduledExecutorService> setGatewayPool, Consumer<ExecutorService> setEventPool) {
+        if (mode == DiscordThreadPools.Mode.DEFAULT) {
+            return;
+        }
+        setCallbackPool.accept(DiscordThreadPools.getCallbackPool(mode));
+        setRateLimitPool.accept(DiscordThreadPools.getRateLimitPool());
+        setGatewayPool.accept(DiscordThreadPools.getGatewayPool());
+        ExecutorService eventPool = DiscordThreadPools.getEventPool(mode);
+        if (eventPool != null) {
+            setEventPool.accept(eventPool);
+        }
+    }
+
+    public static void applyThreadPools(JDABuilder builder, DiscordThreadPools.Mode mode) {
+        applyThreadPools(mode, pool -> builder.setCallbackPool(pool, false), pool -> builder.setRateLimitPool(pool, false),
+                pool -> builder.setGatewayPool(pool, false), pool -> builder.setEventPool(pool, false));
+    }
+
+    public static void applyThreadPools(DefaultShardManagerBuilder builder, DiscordThreadPools.Mode mode) {
+        applyThreadPools(mode, pool -> builder.setCallbackPool(pool, false), pool -> builder.setRateLimitPool(pool, false),
+                pool -> builder.setGatewayPool(pool, false), pool -> builder.setEventPool(pool, false));
+    }
+
+    /**
+     * Connects with the given options, or with JDA's defaults if 'full' is false.
+     */
+    public static CompletableFuture<ReadyEvent> connect(DiscordConnection conn, String code, ConnectOptions options, boolean full) {
+        HashSet<GatewayIntent> intents = options.intents;
+        EnumSet<CacheFlag> cacheFlags = options.getCacheFlags();
+        // Automatic intents start from nothing rather than from JDA's default intents and caches.
+        boolean minimal = full && options.autoIntents;
+        if (options.shards == 0) {
+            JDABuilder builder = minimal ? JDABuilder.create(code, intents).disableCache(EnumSet.complementOf(cacheFlags)) : JDABuilder.createDefault(code);
+            if (full) {
+                builder.enableCache(cacheFlags)
+                        .enableIntents(intents)
+                        .setMemberCachePolicy(options.getMemberCachePolicy())
+                        .setAutoReconnect(true)
+                        .setLargeThreshold(options.getLargeThreshold())
+                        .setChunkingFilter(options.getChunkingFilter());
+            }
+            applyThreadPools(builder, options.threadPools);
+            return buildAndListen(conn, builder);
+        }
+        DefaultShardManagerBuilder builder = (minimal ? DefaultShardManagerBuilder.create(code, intents).disableCache(EnumSet.complementOf(cacheFlags)) : DefaultShardManagerBuilder.createDefault(code)).setShardsTotal(options.shards);
+        if (full) {
+            builder.enableCache(cacheFlags)
+                    .enableIntents(intents)
+                    .setMemberCachePolicy(options.getMemberCachePolicy())
+                    .setAutoReconnect(true)
+                    .setLargeThreshold(options.getLargeThreshold())
+                    .setChunkingFilter(options.getChunkingFilter());
+        }
+        applyThreadPools(builder, options.threadPools);
+        return buildShardsAndListen(conn, builder);
+    }
+
+    public static void runConnect(String code, DiscordConnection conn, ScriptEntry scriptEntry, HashSet<GatewayIntent> intents) {
+        ConnectOptions options = new ConnectOptions();
+        options.intents = intents;
+        runConnect(code, conn, scriptEntry, options);
+    }
+
+    public static boolean intentRefreshQueued = false;
+
+    /**
+     * Called when a Discord script event is enabled or disabled. Checks, once scripts have finished loading, whether any bot using automatic intents needs to reconnect.
+     */
+    public static void scheduleIntentRefresh() {
+        if (intentRefreshQueued || DenizenDiscordBot.instance == null || !DenizenDiscordBot.instance.isEnabled()) {
+            return;
+        }
+        intentRefreshQueued = true;
+        Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> {
+            intentRefreshQueued = false;
+            for (DiscordConnection conn : new ArrayList<>(DenizenDiscordBot.instance.connections.values())) {
+                ConnectOptions options = conn.connectOptions;
+                if (options == null || !options.autoIntents || !conn.ready.isDone() || conn.ready.isCompletedExceptionally()) {
+                    continue;
+                }
+                HashSet<GatewayIntent> newIntents = options.computeAutoIntents();
+                if (!newIntents.equals(options.intents)) {
+                    options.intents = newIntents;
+                    DenizenCore.runAsync(() -> reconnect(conn, options));
+                }
+            }
         });
     }
 
+    /**
+     * Replaces the bot's gateway connection with a new one using the current options, keeping its flags, caches and debounced edits.
+     * Interactions received before the swap belong to the old connection, which is shut down, so they can't be replied to afterwards.
+     * The new connection is built into a separate holder, so the bot keeps using its old connection until the new one is ready.
+     * If the new connection fails, the bot is disconnected entirely, like the 'disconnect' instruction of the discord command.
+     */
+    public static void reconnect(DiscordConnection conn, ConnectOptions options) {
+        Debug.log("dDiscordBot", "Reconnecting bot '" + conn.botID + "' as the Discord events in use have changed. New intents: " + options.intents);
+        DiscordConnection staging = new DiscordConnection();
+        staging.botID = conn.botID;
+        // The swap is done on the main thread, as that's where the connection map is changed.
+        connectWithFallback(staging, options.token, options, null).whenComplete((readyEvent, ex) -> Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> {
+            if (ex != null || DenizenDiscordBot.instance.connections.get(conn.botID) != conn) {
+                // Failed, or the bot was disconnected while the new connection was starting.
+                if (staging.shardManager != null) {
+                    staging.shardManager.shutdownNow();
+                }
+                else if (staging.client != null) {
+                    staging.client.shutdownNow();
+                }
+                if (ex == null) {
+                    return;
+                }
+                Debug.echoError("Failed to reconnect Discord bot '" + conn.botID + "', so it has been disconnected:");
+                Debug.echoError(ex);
+                if (DenizenDiscordBot.instance.connections.remove(conn.botID, conn)) {
+                    conn.pauseBulkJobs();
+                    conn.flagSaver.saveAndClose(true);
+                    conn.shutdown(false);
+                }
+                conn.ready.obtrudeException(ex);
+                return;
+            }
+            JDA oldClient = conn.client;
+            ShardManager oldShards = conn.shardManager;
+            conn.shardManager = staging.shardManager;
+            conn.client = staging.client;
+            DiscordCommandUtils.forgetConnection(conn);
+            conn.registerHandlers();
+            // Only the old gateway connection is closed: requests it already queued are still sent.
+            if (oldShards != null) {
+                oldShards.removeEventListener(conn);
+                oldShards.shutdown();
+            }
+            else if (oldClient != null) {
+                oldClient.removeEventListener(conn);
+                oldClient.shutdown();
+            }
+        }));
+    }
+
+    /**
+     * Connects with the given options, falling back to JDA's defaults (without the extra intents) if Discord refuses them.
+     * The script entry is only used for error messages, and may be null.
+     */
+    public static CompletableFuture<ReadyEvent> connectWithFallback(DiscordConnection conn, String code, ConnectOptions options, ScriptEntry scriptEntry) {
+        // Try with intents
+        return connect(conn, code, options, true).exceptionallyCompose(ex -> {
+            if (conn.shardManager != null) {
+                conn.shardManager.shutdownNow();
+                conn.shardManager = null;
+            }
+            if (CoreConfiguration.debugVerbose) {
+                Debug.echoError(scriptEntry, ex);
+            }
+            Debug.echoError(scriptEntry, "Discord full connection attempt failed.");
+            Debug.log("Discord using fallback connection path - connecting with intents disabled. Enable the members intent in your bot's settings (at https://discord.com/developers/applications ) to fix this.");
+            // If startup failure, try without intents
+            return connect(conn, code, options, false);
+        });
+    }
+
+    public static void runConnect(String code, DiscordConnection conn, ScriptEntry scriptEntry, ConnectOptions options) {
+        options.token = code;
+        conn.connectOptions = options;
+        conn.eventFilter = options.filter;
+        String file = flagFilePathFor(conn.botID);
+        // Load flags in parallel with the gateway handshake, rather than after it, but only once any writes from this bot's previous connection are done
+        CompletableFuture<SavableMapFlagTracker> flagLoad = DiscordFlagSaver.waitForWrites(conn.botID).thenApplyAsync(v -> {
+            if (!new File(file + ".dat").exists() && new File(file + ".dat.dat").exists()) { // Patch prior mistake of filename
+                new File(file + ".dat.dat").renameTo(new File(file + ".dat"));
+            }
+            DiscordFlagSaver.recoverTempFile(file);
+            SavableMapFlagTracker flags = SavableMapFlagTracker.loadFlagFile(file, true);
+            if (DiscordFlagStore.enabled) {
+                conn.flagStore = new DiscordFlagStore(conn);
+            }
+            return flags;
+        });
+        CompletableFuture<ReadyEvent> ready = connectWithFallback(conn, code, options, scriptEntry);
+        ready.thenCombine(flagLoad, (readyEvent, flags) -> {
+            conn.registerHandlers();
+            DenizenCore.runOnMainThread(() -> {
+                migrateFlags(conn, flags);
+                conn.flags = flags;
+                scriptEntry.setFinished(true);
+                conn.ready.complete(conn);
+                conn.autoHandle(readyEvent, DiscordBotReadyScriptEvent.instance);
+            });
+            return null;
+        }).exceptionally(ex -> {
+            flagLoad.handle((flags, loadEx) -> {
+                Bukkit.getScheduler().runTask(DenizenDiscordBot.instance, () -> {
+                    // The gateway may have connected even though the flag load failed, so don't leave it running unreachable.
+                    // This also forgets the connection in DiscordCommandUtils.
+                    conn.shutdown(true);
+                    DenizenDiscordBot.instance.connections.remove(conn.botID);
+                    Debug.echoError(ex);
+                    conn.flags = flags;
+                    // Closes the flag log (if any) once written, so connecting again can open it.
+                    conn.flagSaver.saveAndClose(true);
+                    scriptEntry.setFinished(true);
+                    conn.ready.completeExceptionally(ex);
+                });
+                return null;
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Moves the bot's flags between the main flag file and sharded or log storage, to match the current config, then indexes the main file's expiring flags.
+     * Runs on the main thread before the flags are made available, as moving flags saves through {@link DiscordFlagSaver#save}.
+     */
+    public static void migrateFlags(DiscordConnection conn, SavableMapFlagTracker flags) {
+        if (conn.flagStore != null) {
+            conn.flagStore.migrate(flags);
+            conn.flagStore.migrateShardFiles();
+            conn.flagStore.migrateLogFile();
+        }
+        else {
+            DiscordFlagStore.migrateBack(conn, flags);
+        }
+        conn.flagExpiry.indexExisting(flags);
+    }
 
     public static String flagFilePathFor(String bot) {
         return DenizenDiscordBot.instance.getDataFolder().getPath() + "/flags/bot_" + Argument.prefixCharsAllowed.trimToMatches(CoreUtilities.toLowerCase(bot));
@@ -195,7 +636,16 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
                                    @ArgPrefixed @ArgName("id") String idString,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("tokenfile") String tokenFile,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("token") SecretTag token,
-                                   @ArgPrefixed @ArgDefaultNull @ArgName("intents") ListTag intents) {
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("intents") ListTag intents,
+                                   @ArgPrefixed @ArgDefaultText("0") @ArgName("shards") int shards,
+                                   @ArgPrefixed @ArgDefaultText("all") @ArgName("member_cache") MemberCacheMode memberCache,
+                                   @ArgPrefixed @ArgDefaultText("10000") @ArgName("member_cache_size") int memberCacheSize,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("member_groups") @ArgSubType(DiscordGroupTag.class) List<DiscordGroupTag> memberGroups,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("allow_groups") @ArgSubType(DiscordGroupTag.class) List<DiscordGroupTag> allowGroups,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("deny_groups") @ArgSubType(DiscordGroupTag.class) List<DiscordGroupTag> denyGroups,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("allow_channels") @ArgSubType(DiscordChannelTag.class) List<DiscordChannelTag> allowChannels,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("deny_channels") @ArgSubType(DiscordChannelTag.class) List<DiscordChannelTag> denyChannels,
+                                   @ArgPrefixed @ArgDefaultText("default") @ArgName("thread_pools") DiscordThreadPools.Mode threadPools) {
         String id = CoreUtilities.toLowerCase(idString);
         if (DenizenDiscordBot.instance.connections.containsKey(id)) {
             Debug.echoError("Failed to connect: duplicate ID!");
@@ -226,12 +676,21 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
             DenizenDiscordBot.instance.connections.remove(id);
             throw new InvalidArgumentsRuntimeException("Invalid token specified. Content doesn't look like a bot token.");
         }
+        if (shards < -1) {
+            DenizenDiscordBot.instance.connections.remove(id);
+            throw new InvalidArgumentsRuntimeException("Invalid shard count: must be -1 (automatic), 0 (no sharding), or a positive number.");
+        }
         HashSet<GatewayIntent> intentSet = new HashSet<>(defaultIntents);
+        boolean autoIntents = false;
         if (intents != null) {
             for (String intent : intents) {
                 if (CoreUtilities.equalsIgnoreCase(intent, "clear")) {
                     intentSet.clear();
                 }
+                else if (CoreUtilities.equalsIgnoreCase(intent, "auto")) {
+                    intentSet.clear();
+                    autoIntents = true;
+                }
                 else {
                     GatewayIntent actualIntent = ElementTag.asEnum(GatewayIntent.class, intent);
                     if (actualIntent == null) {
@@ -242,7 +701,49 @@ public class DiscordConnectCommand extends AbstractCommand implements Holdable {
                 }
             }
         }
+        ConnectOptions options = new ConnectOptions();
+        options.shards = shards;
+        options.memberCache = memberCache;
+        options.memberCacheSize = memberCacheSize;
+        if (memberGroups != null) {
+            options.memberGroups = new long[memberGroups.size()];
+            for (int i = 0; i < options.memberGroups.length; i++) {
+                options.memberGroups[i] = memberGroups.get(i).guild_id;
+            }
+        }
+        DiscordEventFilter filter = new DiscordEventFilter();
+        if (allowGroups != null) {
+            for (DiscordGroupTag group : allowGroups) {
+                filter.allowGroups.add(group.guild_id);
+            }
+        }
+        if (denyGroups != null) {
+            for (DiscordGroupTag group : denyGroups) {
+                filter.denyGroups.add(group.guild_id);
+            }
+        }
+        if (allowChannels != null) {
+            for (DiscordChannelTag channel : allowChannels) {
+                filter.allowChannels.add(channel.channel_id);
+            }
+        }
+        if (denyChannels != null) {
+            for (DiscordChannelTag channel : denyChannels) {
+                filter.denyChannels.add(channel.channel_id);
+            }
+        }
+        options.filter = filter.isEmpty() ? null : filter;
+        options.threadPools = threadPools;
+        if (autoIntents) {
+            options.autoIntents = true;
+            options.extraIntents = intentSet;
+            options.intents = options.computeAutoIntents();
+        }
+        else {
+            options.addMemberCacheIntents(intentSet);
+            options.intents = intentSet;
+        }
         String finalCode = code;
-        DenizenCore.runAsync(() -> runConnect(finalCode, dc, scriptEntry, intentSet));
+        DenizenCore.runAsync(() -> runConnect(finalCode, dc, scriptEntry, options));
     }
 }
@@ -16,6 +16,7 @@ import net.dv8tion.jda.api.entities.channel.Channel;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.entities.channel.concrete.ThreadChannel;
 import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.requests.RestAction;
 
 public class DiscordCreateThreadCommand extends AbstractCommand implements Holdable {
@@ -87,12 +88,12 @@ public class DiscordCreateThreadCommand extends AbstractCommand implements Holda
                 forMessage = forMessage.duplicate();
                 forMessage.bot = bot.bot;
             }
-            Message actualMessage = forMessage.getMessage();
-            if (actualMessage == null) {
+            MessageChannel messageChannel = forMessage.getChannel();
+            if (messageChannel == null) {
                 throw new InvalidArgumentsRuntimeException("Invalid message reference.");
             }
-            checkChannel(actualMessage.getChannel());
-            action = ((TextChannel) actualMessage.getChannel()).createThreadChannel(name, actualMessage.getIdLong());
+            checkChannel(messageChannel);
+            action = ((TextChannel) messageChannel).createThreadChannel(name, forMessage.message_id);
         }
         else {
             DiscordChannelTag forChannel = channel;
@@ -22,17 +22,17 @@ public class DiscordInteractionCommand extends AbstractCommand implements Holdab
 
     public DiscordInteractionCommand() {
         setName("discordinteraction");
-        setSyntax("discordinteraction [defer/reply/edit/delete] [interaction:<interaction>] (ephemeral) (rows:<rows>) (<message>) (embed:<embed>|...) (attach_files:<map>)");
-        setRequiredArguments(2, 7);
+        setSyntax("discordinteraction [defer/reply/edit/delete] [interaction:<interaction>] (ephemeral) (rows:<rows>) (<message>) (embed:<embed>|...) (template_values:<map>) (attach_files:<map>)");
+        setRequiredArguments(2, 8);
         isProcedural = false;
         autoCompile();
     }
 
     // <--[command]
     // @Name discordinteraction
-    // @Syntax discordinteraction [defer/reply/delete] [interaction:<interaction>] (ephemeral) (rows:<rows>) (<message>) (embed:<embed>|...) (attach_files:<map>)
+    // @Syntax discordinteraction [defer/reply/delete] [interaction:<interaction>] (ephemeral) (rows:<rows>) (<message>) (embed:<embed>|...) (template_values:<map>) (attach_files:<map>)
     // @Required 2
-    // @Maximum 7
+    // @Maximum 8
     // @Short Manages Discord interactions.
     // @Plugin dDiscordBot
     // @Guide https://guide.denizenscript.com/guides/expanding/ddiscordbot.html
@@ -50,6 +50,7 @@ public class DiscordInteractionCommand extends AbstractCommand implements Holdab
     // Replying to an interaction uses similar logic to normal messaging. See <@link command discordmessage>.
     // If you deferred without using 'ephemeral', the 'delete' option will delete the "Thinking..." message.
     // Ephemeral replies cannot have files.
+    // Embed templates can be filled in with "template_values:<map>", the same as in <@link command discordmessage>.
     //
     // Slash commands, and replies to interactions, have limitations. See <@link url https://gist.github.com/MinnDevelopment/b883b078fdb69d0e568249cc8bf37fe9>.
     //
@@ -85,6 +86,7 @@ public class DiscordInteractionCommand extends AbstractCommand implements Holdab
                                    @ArgPrefixed @ArgDefaultNull @ArgName("rows") ObjectTag rows,
                                    @ArgRaw @ArgLinear @ArgDefaultNull @ArgName("message") ObjectTag message,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("embed") @ArgSubType(DiscordEmbedTag.class) List<DiscordEmbedTag> embeds,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("template_values") MapTag templateValues,
                                    // Note: attachFiles intentionally at end
                                    @ArgPrefixed @ArgDefaultNull @ArgName("attach_files") MapTag attachFilesMap,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("attach_file_name") String attachFileName,
@@ -100,12 +102,12 @@ public class DiscordInteractionCommand extends AbstractCommand implements Holdab
                 yield ((IReplyCallback) interaction.interaction).deferReply(ephemeral);
             }
             case EDIT -> {
-                AbstractMessageBuilder<?, ?> messageBuilder = DiscordMessageCommand.createMessageBuilder(scriptEntry, true, false, rows, message, embeds, attachFileName, attachFileText, attachFilesMap);
+                AbstractMessageBuilder<?, ?> messageBuilder = DiscordMessageCommand.createMessageBuilder(scriptEntry, true, false, rows, message, embeds, attachFileName, attachFileText, attachFilesMap, null, false, templateValues);
                 InteractionHook hook = ((IDeferrableCallback) interaction.interaction).getHook();
                 yield (RestAction<?>) hook.editOriginal((MessageEditData) messageBuilder.build());
             }
             case REPLY -> {
-                MessageCreateBuilder messageBuilder = (MessageCreateBuilder) DiscordMessageCommand.createMessageBuilder(scriptEntry, false, false, rows, message, embeds, attachFileName, attachFileText, attachFilesMap);
+                MessageCreateBuilder messageBuilder = (MessageCreateBuilder) DiscordMessageCommand.createMessageBuilder(scriptEntry, false, false, rows, message, embeds, attachFileName, attachFileText, attachFilesMap, null, false, templateValues);
                 if (interaction.interaction.isAcknowledged()) {
                     InteractionHook hook = ((IDeferrableCallback) interaction.interaction).getHook();
                     yield hook.sendMessage(messageBuilder.build());
@@ -0,0 +1,77 @@
+package com.denizenscript.ddiscordbot.commands;
+
+import com.denizenscript.ddiscordbot.DiscordCommandUtils;
+import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.objects.DiscordBotTag;
+import com.denizenscript.ddiscordbot.objects.DiscordGroupTag;
+import com.denizenscript.ddiscordbot.objects.DiscordUserTag;
+import com.denizenscript.denizencore.exceptions.InvalidArgumentsRuntimeException;
+import com.denizenscript.denizencore.objects.core.ElementTag;
+import com.denizenscript.denizencore.scripts.ScriptEntry;
+import com.denizenscript.denizencore.scripts.commands.AbstractCommand;
+import com.denizenscript.denizencore.scripts.commands.Holdable;
+import com.denizenscript.denizencore.scripts.commands.generator.*;
+import net.dv8tion.jda.api.entities.Guild;
+
+public class DiscordMemberCommand extends AbstractCommand implements Holdable {
+
+    public DiscordMemberCommand() {
+        setName("discordmember");
+        setSyntax("discordmember (id:<bot>) [fetch] [user:<user>] [group:<group>]");
+        setRequiredArguments(3, 4);
+        isProcedural = false;
+        autoCompile();
+    }
+
+    // <--[command]
+    // @Name discordmember
+    // @Syntax discordmember (id:<bot>) [fetch] [user:<user>] [group:<group>]
+    // @Required 3
+    // @Maximum 4
+    // @Short Looks up a user's membership of a group from Discord.
+    // @Plugin dDiscordBot
+    // @Guide https://guide.denizenscript.com/guides/expanding/ddiscordbot.html
+    // @Group external
+    //
+    // @Description
+    // Looks up a user's membership of a group from Discord.
+    //
+    // Use "fetch" to look the member up, so that member tags (like <@link tag DiscordUserTag.roles>) work for them for a short while,
+    // even if the bot doesn't cache every member (see the 'member_cache' option of <@link command discordconnect>).
+    // If the member is already cached, no request is sent.
+    //
+    // The command should always be ~waited for. See <@link language ~waitable>.
+    //
+    // @Tags
+    // <entry[saveName].is_member> returns whether the user is a member of the group.
+    //
+    // @Usage
+    // Use to make sure a user's group membership is available to tags, even if they aren't in the bot's member cache.
+    // - ~discordmember id:mybot fetch user:<[user]> group:<[group]> save:member
+    // - if <entry[member].is_member>:
+    //     - narrate "Roles: <[user].roles[<[group]>].parse[name].formatted>"
+    // -->
+
+    public enum DiscordMemberInstruction { FETCH }
+
+    public static void autoExecute(ScriptEntry scriptEntry,
+                                   @ArgPrefixed @ArgName("id") @ArgDefaultNull DiscordBotTag bot,
+                                   @ArgName("instruction") DiscordMemberInstruction instruction,
+                                   @ArgPrefixed @ArgName("user") DiscordUserTag user,
+                                   @ArgPrefixed @ArgName("group") DiscordGroupTag group) {
+        bot = DiscordCommandUtils.inferBot(bot, group, user);
+        DiscordConnection connection = bot.getConnection();
+        if (connection == null) {
+            throw new InvalidArgumentsRuntimeException("Bot '" + bot.bot + "' is not connected.");
+        }
+        Guild guild = connection.getGuildById(group.guild_id);
+        if (guild == null) {
+            throw new InvalidArgumentsRuntimeException("Unknown group " + group.guild_id + ".");
+        }
+        switch (instruction) {
+            case FETCH -> DiscordCommandUtils.cleanWait(scriptEntry, connection.retrieveMember(guild, user.user_id).thenAccept(member -> {
+                scriptEntry.saveObject("is_member", new ElementTag(member != null));
+            }));
+        }
+    }
+}
@@ -3,10 +3,14 @@ package com.denizenscript.ddiscordbot.commands;
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
 import com.denizenscript.ddiscordbot.DiscordCommandUtils;
 import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.DiscordRestPolicy;
 import com.denizenscript.ddiscordbot.objects.*;
+import com.denizenscript.denizen.Denizen;
+import com.denizenscript.denizen.utilities.Utilities;
 import com.denizenscript.denizencore.exceptions.InvalidArgumentsRuntimeException;
 import com.denizenscript.denizencore.objects.ObjectTag;
 import com.denizenscript.denizencore.objects.core.BinaryTag;
+import com.denizenscript.denizencore.objects.core.DurationTag;
 import com.denizenscript.denizencore.objects.core.MapTag;
 import com.denizenscript.denizencore.scripts.ScriptEntry;
 import com.denizenscript.denizencore.scripts.commands.AbstractCommand;
@@ -15,9 +19,9 @@ import com.denizenscript.denizencore.scripts.commands.generator.*;
 import com.denizenscript.denizencore.utilities.CoreUtilities;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import com.denizenscript.denizencore.utilities.text.StringHolder;
-import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.attribute.IWebhookContainer;
 import net.dv8tion.jda.api.entities.channel.concrete.ForumChannel;
 import net.dv8tion.jda.api.entities.channel.forums.ForumPost;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -26,25 +30,29 @@ import net.dv8tion.jda.api.interactions.components.ItemComponent;
 import net.dv8tion.jda.api.utils.FileUpload;
 import net.dv8tion.jda.api.utils.messages.*;
 
+import java.io.*;
+import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
 
 public class DiscordMessageCommand extends AbstractCommand implements Holdable {
 
     public DiscordMessageCommand() {
         setName("discordmessage");
-        setSyntax("discordmessage (id:<id>) [reply:<message>/edit:<message>/channel:<channel>/user:<user>] (<message>) (no_mention) (rows:<rows>) (embed:<embed>|...) (attach_files:<map>) (post_title:<name>)");
-        setRequiredArguments(2, 8);
+        setSyntax("discordmessage (id:<id>) [reply:<message>/edit:<message>/channel:<channel>/user:<user>] (<message>) (no_mention) (rows:<rows>) (embed:<embed>|...) (template_values:<map>) (attach_files:<map>) (attach_file_paths:<map>) (compress_files) (post_title:<name>) (debounce:<duration>) (webhook_name:<name>) (webhook_avatar:<url>)");
+        setRequiredArguments(2, 14);
         isProcedural = false;
         autoCompile();
     }
 
     // <--[command]
     // @Name discordmessage
-    // @Syntax discordmessage (id:<id>) [reply:<message>/edit:<message>/channel:<channel>/user:<user>] (<message>) (no_mention) (rows:<rows>) (embed:<embed>|...) (attach_files:<map>) (post_title:<name>)
+    // @Syntax discordmessage (id:<id>) [reply:<message>/edit:<message>/channel:<channel>/user:<user>] (<message>) (no_mention) (rows:<rows>) (embed:<embed>|...) (template_values:<map>) (attach_files:<map>) (attach_file_paths:<map>) (compress_files) (post_title:<name>) (debounce:<duration>) (webhook_name:<name>) (webhook_avatar:<url>)
     // @Required 2
-    // @Maximum 8
+    // @Maximum 14
     // @Short Sends a message to a Discord channel.
     // @Plugin dDiscordBot
     // @Guide https://guide.denizenscript.com/guides/expanding/ddiscordbot.html
@@ -62,16 +70,29 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
     // To get IDs, enable "Developer Mode" in your Discord settings, then right click on the channel and press "Copy ID".
     //
     // You can edit an existing message by using "edit:<message>".
+    // When editing, optionally specify "debounce:<duration>" to limit edits of that message to at most one per duration.
+    // The first edit is sent immediately, and edits made during the duration are collapsed so that only the latest content is sent when it ends.
+    // Every debounced edit can still be ~waited for, and will complete when the edit carrying its content (or newer content) is sent.
+    // This is useful for messages that are frequently updated with live information, like a server status message.
     //
     // You can use "attach_file_name:<name>" and "attach_file_text:<text>" to attach a text file with longer content than a normal message allows.
     // Alternatively, you can use "attach_files:<map>" to attach files as a MapTag of the name of the file to the text or a BinaryTag.
+    // To attach large files that already exist on disk, use "attach_file_paths:<map>" as a MapTag of the name of the file to a file path relative to the Denizen folder.
+    // Files attached by path are streamed directly from disk rather than being loaded into memory, and are subject to the file security settings in Denizen/config.yml.
+    // Optionally specify "compress_files" to gzip-compress files attached by path while they are being sent (".gz" will be added to their names).
     //
     // To send embeds, use "embed:<embed>|...".
+    // If the embeds contain "{{key}}" placeholders, use "template_values:<map>" to fill them in. See <@link objecttype DiscordEmbedTag>.
     //
     // You can use "rows" to attach action rows of components, such as buttons to the message, using <@link objecttype DiscordButtonTag>, and <@link objecttype DiscordSelectionTag>.
     //
     // You can send a message into a Forum Channel with "post_title" specified to create a post in that forum.
     //
+    // To send a message in a channel through a webhook, specify "webhook_name:<name>" and/or "webhook_avatar:<url>" to set the name and avatar image shown on the message.
+    // The bot will reuse a webhook it previously created in the channel, or create one if needed (requires the 'manage webhooks' permission), and remember it for later messages.
+    // Webhook messages are rate limited separately from the bot's own messages, which makes them well suited to relaying chat from many different players.
+    // Webhook sending is only available with "channel:<channel>", and not in threads, forums, or direct messages.
+    //
     // The command can be ~waited for. See <@link language ~waitable>.
     //
     // @Tags
@@ -115,6 +136,21 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
     // - discordmessage id:mybot edit:<entry[msg].message> "Goodbye!"
     //
     // @Usage
+    // Use to relay a player's chat message into a channel under their own name and skin.
+    // - discordmessage id:mybot channel:<[channel]> webhook_name:<player.name> webhook_avatar:https://mc-heads.net/avatar/<player.uuid> <context.message>
+    //
+    // @Usage
+    // Use to update a live status message, sending at most one edit every 5 seconds.
+    // - discordmessage id:mybot edit:<[status_message]> "Players online: <server.online_players.size>" debounce:5s
+    //
+    // @Usage
+    // Use to update a leaderboard embed template with new values.
+    // - definemap values:
+    //     first: <[top].get[1]>
+    //     second: <[top].get[2]>
+    // - discordmessage id:mybot edit:<[leaderboard_message]> embed:<[leaderboard_template]> template_values:<[values]>
+    //
+    // @Usage
     // Use to send multiple embeds in a single message
     // - ~discordmessage id:mybot channel:<[channel]> embed:<discord_embed[title=embed 1]>|<discord_embed[title=embed 2]>
     //
@@ -127,29 +163,113 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
     //     info.yml: <entry[info].data>
     //     my_image.png: <entry[image].data>
     // - ~discordmessage id:mybot channel:<[channel]> attach_files:<[files]>
+    //
+    // @Usage
+    // Use to upload a large log file from disk, compressed.
+    // - ~discordmessage id:mybot channel:<[channel]> attach_file_paths:<map[latest.log=../../logs/latest.log]> compress_files
     // -->
 
+    public static final int ROW_CACHE_SIZE = 256;
+
+    /**
+     * A built set of component rows, along with the input objects it was built from.
+     */
+    public static class CachedRows {
+
+        public final WeakReference<ObjectTag> source;
+
+        public final ObjectTag[][] inputs;
+
+        public final List<ActionRow> rows;
+
+        public CachedRows(ObjectTag source, ObjectTag[][] inputs, List<ActionRow> rows) {
+            this.source = new WeakReference<>(source);
+            this.inputs = inputs;
+            this.rows = rows;
+        }
+
+        public boolean matches(ObjectTag rowsObj, ObjectTag[][] rowsInputs) {
+            if (source.get() != rowsObj || inputs.length != rowsInputs.length) {
+                return false;
+            }
+            for (int row = 0; row < inputs.length; row++) {
+                if (inputs[row].length != rowsInputs[row].length) {
+                    return false;
+                }
+                for (int i = 0; i < inputs[row].length; i++) {
+                    if (inputs[row][i] != rowsInputs[row][i]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Built component rows, in the slot picked by the identity of the rows input, so that a layout repeated across many sends is only built once.
+     * An entry is only reused if the same rows object still holds the same row and component objects, so a list changed in place is rebuilt.
+     * JDA action rows are immutable, so the same list can safely be given to any number of messages.
+     */
+    public static final CachedRows[] rowCache = new CachedRows[ROW_CACHE_SIZE];
+
     public static List<ActionRow> createRows(ScriptEntry scriptEntry, ObjectTag rowsObj) {
         if (rowsObj == null) {
             return null;
         }
         Collection<ObjectTag> rows = CoreUtilities.objectToList(rowsObj, scriptEntry.getContext());
-        List<ActionRow> actionRows = new ArrayList<>();
+        ObjectTag[][] inputs = new ObjectTag[rows.size()][];
+        int index = 0;
         for (ObjectTag row : rows) {
-            List<ItemComponent> components = new ArrayList<>();
-            for (ObjectTag component : CoreUtilities.objectToList(row, scriptEntry.getContext())) {
+            Collection<ObjectTag> components = CoreUtilities.objectToList(row, scriptEntry.getContext());
+            ObjectTag[] rowInputs = new ObjectTag[components.size() + 1];
+            rowInputs[0] = row;
+            int componentIndex = 1;
+            for (ObjectTag component : components) {
+                rowInputs[componentIndex++] = component;
+            }
+            inputs[index++] = rowInputs;
+        }
+        int slot = System.identityHashCode(rowsObj) & (ROW_CACHE_SIZE - 1);
+        synchronized (rowCache) {
+            CachedRows cached = rowCache[slot];
+            if (cached != null && cached.matches(rowsObj, inputs)) {
+                return cached.rows;
+            }
+        }
+        List<ActionRow> actionRows = new ArrayList<>(inputs.length);
+        boolean valid = true;
+        for (ObjectTag[] rowInputs : inputs) {
+            List<ItemComponent> components = new ArrayList<>(rowInputs.length - 1);
+            for (int i = 1; i < rowInputs.length; i++) {
+                ObjectTag component = rowInputs[i];
+                ItemComponent built = null;
                 if (component.canBeType(DiscordButtonTag.class)) {
-                    components.add(component.asType(DiscordButtonTag.class, scriptEntry.getContext()).build());
+                    built = component.asType(DiscordButtonTag.class, scriptEntry.getContext()).getBuiltButton();
                 }
                 else if (component.canBeType(DiscordSelectionTag.class)) {
-                    components.add(component.asType(DiscordSelectionTag.class, scriptEntry.getContext()).build(scriptEntry.getContext()).build());
+                    built = component.asType(DiscordSelectionTag.class, scriptEntry.getContext()).getBuiltMenu(scriptEntry.getContext());
                 }
                 else {
                     Debug.echoError("Unrecognized component list entry '" + component + "'");
+                    valid = false;
+                    continue;
                 }
+                if (built == null) {
+                    Debug.echoError("Invalid component list entry '" + component + "'");
+                    valid = false;
+                    continue;
+                }
+                components.add(built);
             }
             actionRows.add(ActionRow.of(components));
         }
+        actionRows = Collections.unmodifiableList(actionRows);
+        if (valid) {
+            synchronized (rowCache) {
+                rowCache[slot] = new CachedRows(rowsObj, inputs, actionRows);
+            }
+        }
         return actionRows;
     }
 
@@ -170,17 +290,22 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
                                    @ArgPrefixed @ArgDefaultNull @ArgName("rows") ObjectTag rows,
                                    @ArgRaw @ArgLinear @ArgDefaultNull @ArgName("raw_message") ObjectTag message,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("embed") @ArgSubType(DiscordEmbedTag.class) List<DiscordEmbedTag> embeds,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("template_values") MapTag templateValues,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("post_title") String postTitle,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("debounce") DurationTag debounce,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("webhook_name") String webhookName,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("webhook_avatar") String webhookAvatar,
                                    // Note: attachFiles intentionally at end
                                    @ArgPrefixed @ArgDefaultNull @ArgName("attach_files") MapTag attachFilesMap,
+                                   @ArgPrefixed @ArgDefaultNull @ArgName("attach_file_paths") MapTag attachFilePaths,
+                                   @ArgName("compress_files") boolean compressFiles,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("attach_file_name") String attachFileName,
                                    @ArgPrefixed @ArgDefaultNull @ArgName("attach_file_text") String attachFileText) {
         bot = DiscordCommandUtils.inferBot(bot, channel, user, reply, edit);
-        if ((message == null || message.toString().length() == 0) && attachFileName == null && attachFilesMap == null && embeds == null) {
+        if ((message == null || message.toString().length() == 0) && attachFileName == null && attachFilesMap == null && attachFilePaths == null && embeds == null) {
             throw new InvalidArgumentsRuntimeException("Must have a message!");
         }
         DiscordConnection connection = bot.getConnection();
-        JDA client = connection.client;
         CompletableFuture<? extends Channel> toChannel;
         if (reply != null && reply.channel_id != 0) {
             toChannel = requireChannel(connection.getChannel(reply.channel_id));
@@ -192,17 +317,52 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
             toChannel = requireChannel(connection.getChannel(channel.channel_id));
         }
         else if (user != null) {
-            User userObj = client.getUserById(user.user_id);
-            if (userObj == null) {
-                throw new InvalidArgumentsRuntimeException("Invalid or unrecognized user (given user ID not valid? Have you enabled the 'members' intent?).");
-            }
-            toChannel = userObj.openPrivateChannel().submit();
+            toChannel = connection.openPrivateChannel(user.user_id);
         }
         else {
             throw new InvalidArgumentsRuntimeException("Missing channel!");
         }
-        final AbstractMessageBuilder<?, ?> finalBuilder = createMessageBuilder(scriptEntry, edit != null, noMention, rows, message, embeds, attachFileName, attachFileText, attachFilesMap);
+        final AbstractMessageBuilder<?, ?> finalBuilder = createMessageBuilder(scriptEntry, edit != null, noMention, rows, message, embeds, attachFileName, attachFileText, attachFilesMap, attachFilePaths, compressFiles, templateValues);
+        if (debounce != null) {
+            if (edit == null) {
+                throw new InvalidArgumentsRuntimeException("The 'debounce' argument can only be used with 'edit'.");
+            }
+            toChannel.thenAccept(c -> {
+                if (!(c instanceof MessageChannel mc)) {
+                    Debug.echoError(scriptEntry, "Cannot debounce edits outside of a message channel.");
+                    scriptEntry.setFinished(true);
+                    return;
+                }
+                connection.editDebouncer.submit(scriptEntry, mc, edit.message_id, (MessageEditData) finalBuilder.build(), debounce.getTicks());
+            }).exceptionally(ex -> {
+                // The debouncer finishes the entry once the edit is sent, so only failures before that are handled here.
+                Debug.echoError(scriptEntry, DiscordRestPolicy.unwrap(ex));
+                scriptEntry.setFinished(true);
+                return null;
+            });
+            return;
+        }
         final DiscordBotTag finalBot = bot;
+        // JDA closes uploads once a request is sent, so a request with files can't be safely re-sent.
+        final boolean hasUploads = attachFileName != null || attachFilesMap != null || attachFilePaths != null;
+        if (webhookName != null || webhookAvatar != null) {
+            if (channel == null || reply != null || edit != null) {
+                throw new InvalidArgumentsRuntimeException("Webhook sending can only be used with 'channel'.");
+            }
+            DiscordCommandUtils.cleanWait(scriptEntry, toChannel.thenCompose(c -> {
+                if (!(c instanceof IWebhookContainer container) || c instanceof ForumChannel) {
+                    throw new InvalidArgumentsRuntimeException("Cannot send through a webhook in that channel.");
+                }
+                return connection.webhookCache.getWebhook(container).thenCompose(webhook -> DiscordCommandUtils.submit(connection, webhook.sendMessage((MessageCreateData) finalBuilder.build())
+                        .setUsername(webhookName).setAvatarUrl(webhookAvatar), false))
+                        .whenComplete((m, ex) -> {
+                            if (ex != null) {
+                                connection.webhookCache.invalidateIfUnknown(container.getIdLong(), ex);
+                            }
+                        });
+            }).thenAccept(m -> scriptEntry.saveObject("message", new DiscordMessageTag(finalBot.bot, m))));
+            return;
+        }
         DiscordCommandUtils.cleanWait(scriptEntry, toChannel.thenApply(c -> {
             if (c instanceof ForumChannel forumChannel) {
                 if (postTitle == null) {
@@ -213,7 +373,10 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
             }
             MessageChannel mc = (MessageChannel) c;
             if (reply != null) {
-                return mc.retrieveMessageById(reply.message_id).flatMap(m -> m.reply((MessageCreateData) finalBuilder.build()));
+                if (reply.message != null) {
+                    return reply.message.reply((MessageCreateData) finalBuilder.build());
+                }
+                return mc.sendMessage((MessageCreateData) finalBuilder.build()).setMessageReference(reply.message_id);
             }
             else if (edit != null) {
                 return mc.editMessageById(edit.message_id, (MessageEditData) finalBuilder.build());
@@ -221,11 +384,178 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
             else {
                 return mc.sendMessage((MessageCreateData) finalBuilder.build());
             }
-        }).thenCompose(r -> DiscordCommandUtils.mapError(scriptEntry, r).map(m -> scriptEntry.saveObject("message", new DiscordMessageTag(finalBot.bot, m))).submit()));
+        }).thenCompose(r -> r == null ? CompletableFuture.<Message>completedFuture(null) : DiscordCommandUtils.submit(connection, r, edit != null && !hasUploads)).thenAccept(m -> {
+            if (m != null) {
+                scriptEntry.saveObject("message", new DiscordMessageTag(finalBot.bot, m));
+            }
+        }));
+    }
+
+    /**
+     * Gzip-compresses another stream as it is read, one chunk at a time, so only about one chunk of either form is held in memory.
+     * A read error in the source is thrown from read, which fails the upload rather than sending a truncated file.
+     */
+    public static class GzipCompressingInputStream extends InputStream {
+
+        public final InputStream source;
+
+        public final ByteArrayOutputStream compressed = new ByteArrayOutputStream(64 * 1024);
+
+        public final GZIPOutputStream gzip;
+
+        public final byte[] chunk = new byte[64 * 1024];
+
+        public byte[] pending = new byte[0];
+
+        public int pendingIndex = 0;
+
+        public boolean finished = false;
+
+        public GzipCompressingInputStream(InputStream source) throws IOException {
+            this.source = source;
+            this.gzip = new GZIPOutputStream(compressed, 64 * 1024);
+        }
+
+        /**
+         * Compresses more of the source until there are bytes ready to read, returning false once everything has been read.
+         */
+        public boolean fill() throws IOException {
+            while (pendingIndex >= pending.length) {
+                if (finished) {
+                    return false;
+                }
+                int count = source.read(chunk);
+                if (count < 0) {
+                    gzip.finish();
+                    finished = true;
+                }
+                else {
+                    gzip.write(chunk, 0, count);
+                }
+                pending = compressed.toByteArray();
+                pendingIndex = 0;
+                compressed.reset();
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return pending[pendingIndex++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, pending.length - pendingIndex);
+            System.arraycopy(pending, pendingIndex, buffer, offset, count);
+            pendingIndex += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                gzip.close();
+            }
+            finally {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a file for upload, only opening it once the upload is actually read (so an upload that is never sent holds no file open).
+     * If compressing, the file is compressed as it is read, on the thread sending the upload.
+     */
+    public static class DeferredFileInputStream extends InputStream {
+
+        public final File file;
+
+        public final boolean compress;
+
+        public InputStream input;
+
+        public boolean closed = false;
+
+        public DeferredFileInputStream(File file, boolean compress) {
+            this.file = file;
+            this.compress = compress;
+        }
+
+        public InputStream open() throws IOException {
+            if (closed) {
+                throw new IOException("Upload of '" + file.getName() + "' was already closed");
+            }
+            if (input == null) {
+                if (compress) {
+                    InputStream fileInput = Files.newInputStream(file.toPath());
+                    try {
+                        input = new GzipCompressingInputStream(fileInput);
+                    }
+                    catch (IOException ex) {
+                        fileInput.close();
+                        throw ex;
+                    }
+                }
+                else {
+                    input = new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024);
+                }
+            }
+            return input;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return open().read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (input != null) {
+                input.close();
+                input = null;
+            }
+        }
+    }
+
+    public static List<FileUpload> createPathUploads(MapTag attachFilePaths, boolean compress) {
+        List<FileUpload> fileUploads = new ArrayList<>();
+        for (Map.Entry<StringHolder, ObjectTag> fileSet : attachFilePaths.entrySet()) {
+            File file = new File(Denizen.getInstance().getDataFolder(), fileSet.getValue().toString());
+            if (!Utilities.canReadFile(file)) {
+                throw new InvalidArgumentsRuntimeException("Cannot read from file path '" + fileSet.getValue() + "' due to security settings in Denizen/config.yml.");
+            }
+            if (!file.isFile()) {
+                throw new InvalidArgumentsRuntimeException("Invalid file path '" + fileSet.getValue() + "' specified. File does not exist.");
+            }
+            fileUploads.add(FileUpload.fromData(new DeferredFileInputStream(file, compress), compress ? fileSet.getKey().str + ".gz" : fileSet.getKey().str));
+        }
+        return fileUploads;
     }
 
     public static AbstractMessageBuilder<?, ?> createMessageBuilder(ScriptEntry scriptEntry, boolean isEdit, boolean noMention, ObjectTag rows, ObjectTag message,
                                                                     List<DiscordEmbedTag> embeds, String attachFileName, String attachFileText, MapTag attachFilesMap) {
+        return createMessageBuilder(scriptEntry, isEdit, noMention, rows, message, embeds, attachFileName, attachFileText, attachFilesMap, null, false, null);
+    }
+
+    public static AbstractMessageBuilder<?, ?> createMessageBuilder(ScriptEntry scriptEntry, boolean isEdit, boolean noMention, ObjectTag rows, ObjectTag message,
+                                                                    List<DiscordEmbedTag> embeds, String attachFileName, String attachFileText, MapTag attachFilesMap,
+                                                                    MapTag attachFilePaths, boolean compressFiles, MapTag templateValues) {
         AbstractMessageBuilder<?, ?> builder = isEdit ? new MessageEditBuilder() : new MessageCreateBuilder();
         if ((attachFileName == null) != (attachFileText == null)) {
             throw new InvalidArgumentsRuntimeException("Must specify both attach file name and text, or neither");
@@ -234,18 +564,23 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
             DenizenDiscordBot.discordMessageAttachFile.warn(scriptEntry);
             builder = builder.setFiles(FileUpload.fromData(attachFileText.getBytes(StandardCharsets.UTF_8), attachFileName));
         }
-        if (attachFilesMap != null) {
+        if (attachFilesMap != null || attachFilePaths != null) {
             List<FileUpload> fileUploads = new LinkedList<>();
-            for (Map.Entry<StringHolder, ObjectTag> fileSet : attachFilesMap.entrySet()) {
-                ObjectTag val = fileSet.getValue();
-                byte[] data = val.shouldBeType(BinaryTag.class) ? val.asType(BinaryTag.class, scriptEntry.context).data : val.toString().getBytes(StandardCharsets.UTF_8);
-                fileUploads.add(FileUpload.fromData(data, fileSet.getKey().str));
+            if (attachFilesMap != null) {
+                for (Map.Entry<StringHolder, ObjectTag> fileSet : attachFilesMap.entrySet()) {
+                    ObjectTag val = fileSet.getValue();
+                    byte[] data = val.shouldBeType(BinaryTag.class) ? val.asType(BinaryTag.class, scriptEntry.context).data : val.toString().getBytes(StandardCharsets.UTF_8);
+                    fileUploads.add(FileUpload.fromData(data, fileSet.getKey().str));
+                }
+            }
+            if (attachFilePaths != null) {
+                fileUploads.addAll(createPathUploads(attachFilePaths, compressFiles));
             }
             builder = builder.setFiles(fileUploads);
         }
         if (message != null) {
             if (message.shouldBeType(DiscordEmbedTag.class)) {
-                MessageEmbed embed = message.asType(DiscordEmbedTag.class, scriptEntry.context).build(scriptEntry.context).build();
+                MessageEmbed embed = message.asType(DiscordEmbedTag.class, scriptEntry.context).render(templateValues, scriptEntry.context);
                 builder = builder.setEmbeds(embed);
             }
             else {
@@ -255,7 +590,7 @@ public class DiscordMessageCommand extends AbstractCommand implements Holdable {
         if (embeds != null) {
             List<MessageEmbed> embedList = new LinkedList<>();
             for (DiscordEmbedTag embed : embeds) {
-                embedList.add(embed.build(scriptEntry.context).build());
+                embedList.add(embed.render(templateValues, scriptEntry.context));
             }
             builder = builder.setEmbeds(embedList);
         }
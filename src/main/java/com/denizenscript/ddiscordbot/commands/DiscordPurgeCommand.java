@@ -0,0 +1,221 @@
+package com.denizenscript.ddiscordbot.commands;
+
+import com.denizenscript.ddiscordbot.DiscordCommandUtils;
+import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.objects.DiscordBotTag;
+import com.denizenscript.ddiscordbot.objects.DiscordChannelTag;
+import com.denizenscript.ddiscordbot.objects.DiscordUserTag;
+import com.denizenscript.denizencore.events.ScriptEvent;
+import com.denizenscript.denizencore.exceptions.InvalidArgumentsRuntimeException;
+import com.denizenscript.denizencore.objects.core.DurationTag;
+import com.denizenscript.denizencore.objects.core.ElementTag;
+import com.denizenscript.denizencore.scripts.ScriptEntry;
+import com.denizenscript.denizencore.scripts.commands.AbstractCommand;
+import com.denizenscript.denizencore.scripts.commands.Holdable;
+import com.denizenscript.denizencore.scripts.commands.generator.*;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageHistory;
+import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class DiscordPurgeCommand extends AbstractCommand implements Holdable {
+
+    public DiscordPurgeCommand() {
+        setName("discordpurge");
+        setSyntax("discordpurge (id:<bot>) [channel:<channel>] (limit:<#>/{100}) (user:<user>) (matcher:<text>) (min_age:<duration>) (max_age:<duration>)");
+        setRequiredArguments(1, 7);
+        isProcedural = false;
+        autoCompile();
+    }
+
+    // <--[command]
+    // @Name discordpurge
+    // @Syntax discordpurge (id:<bot>) [channel:<channel>] (limit:<#>/{100}) (user:<user>) (matcher:<text>) (min_age:<duration>) (max_age:<duration>)
+    // @Required 1
+    // @Maximum 7
+    // @Short Deletes many messages from a Discord channel at once.
+    // @Plugin dDiscordBot
+    // @Guide https://guide.denizenscript.com/guides/expanding/ddiscordbot.html
+    // @Group external
+    //
+    // @Description
+    // Deletes many messages from a Discord channel at once.
+    //
+    // The channel's history is read from newest to oldest, one page at a time, and every message that passes all the given filters is deleted,
+    // until "limit" messages have been deleted (defaults to 100) or the channel history runs out.
+    //
+    // Optionally specify "user:<user>" to only delete messages sent by that user.
+    // Optionally specify "matcher:<text>" to only delete messages whose raw text matches the given advanced matcher.
+    // Optionally specify "min_age:<duration>" to only delete messages older than the given duration.
+    // Optionally specify "max_age:<duration>" to only delete messages newer than the given duration. History reading stops once messages are too old.
+    //
+    // Messages in a group channel that are less than 14 days old are deleted in bulk, up to 100 at a time.
+    // Older messages (and messages in direct channels) have to be deleted one at a time, which is much slower.
+    //
+    // Requires the 'manage messages' permission in group channels. In direct channels, only the bot's own messages can be deleted.
+    //
+    // The command should usually be ~waited for. See <@link language ~waitable>.
+    //
+    // @Tags
+    // <entry[saveName].deleted_count> returns the number of messages deleted, when the command is ~waited for.
+    // <entry[saveName].scanned_count> returns the number of messages read from history, when the command is ~waited for.
+    // <entry[saveName].failed_count> returns the number of matching messages that could not be deleted, when the command is ~waited for.
+    //
+    // @Usage
+    // Use to delete the last 50 messages in a channel.
+    // - ~discordpurge id:mybot channel:<[channel]> limit:50
+    //
+    // @Usage
+    // Use to delete every message from a user in the past day, and report how many were removed.
+    // - ~discordpurge id:mybot channel:<[channel]> user:<[user]> max_age:1d limit:1000 save:purge
+    // - narrate "Deleted <entry[purge].deleted_count> messages."
+    //
+    // @Usage
+    // Use to clean up bot command messages (messages that start with '!').
+    // - ~discordpurge id:mybot channel:<[channel]> matcher:regex:(?s)!.* limit:500
+    // -->
+
+    /**
+     * Discord refuses bulk deletion of messages older than 2 weeks, with a small margin to avoid racing the boundary.
+     */
+    public static final long BULK_DELETE_MAX_AGE_SECONDS = 14L * 24 * 60 * 60 - 60;
+
+    public static class PurgeProcess {
+
+        public DiscordConnection connection;
+
+        public MessageChannel channel;
+
+        /**
+         * The oldest message read so far, that the next page of history is read from. Each page is a fresh request,
+         * so history that was already read isn't kept in memory.
+         */
+        public long lastId = 0;
+
+        public int remaining;
+
+        public long userId;
+
+        public ScriptEvent.MatchHelper matcher;
+
+        public OffsetDateTime newestAllowed, oldestAllowed, bulkCutoff;
+
+        public int scanned = 0, deleted = 0, failed = 0;
+
+        public CompletableFuture<Void> nextPage() {
+            RestAction<List<Message>> request = lastId == 0 ? channel.getHistory().retrievePast(100)
+                    : channel.getHistoryBefore(lastId, 100).map(MessageHistory::getRetrievedHistory);
+            return DiscordCommandUtils.submit(connection, request, true).thenCompose(page -> {
+                boolean reachedEnd = page.size() < 100;
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getIdLong();
+                }
+                List<Long> bulk = new ArrayList<>();
+                List<Long> single = new ArrayList<>();
+                for (Message message : page) {
+                    scanned++;
+                    OffsetDateTime created = message.getTimeCreated();
+                    if (oldestAllowed != null && created.isBefore(oldestAllowed)) {
+                        reachedEnd = true;
+                        break;
+                    }
+                    if (newestAllowed != null && created.isAfter(newestAllowed)) {
+                        continue;
+                    }
+                    if (userId != 0 && message.getAuthor().getIdLong() != userId) {
+                        continue;
+                    }
+                    if (matcher != null && !matcher.doesMatch(message.getContentRaw())) {
+                        continue;
+                    }
+                    (bulkCutoff != null && created.isAfter(bulkCutoff) ? bulk : single).add(message.getIdLong());
+                    if (--remaining <= 0) {
+                        reachedEnd = true;
+                        break;
+                    }
+                }
+                CompletableFuture<Void> deletion = deleteBulk(bulk).thenCompose(v -> deleteSingle(single, 0));
+                return reachedEnd ? deletion : deletion.thenCompose(v -> nextPage());
+            });
+        }
+
+        public CompletableFuture<Void> deleteBulk(List<Long> ids) {
+            if (ids.size() < 2) {
+                return deleteSingle(ids, 0);
+            }
+            List<String> idStrings = new ArrayList<>(ids.size());
+            for (long id : ids) {
+                idStrings.add(Long.toUnsignedString(id));
+            }
+            return DiscordCommandUtils.submit(connection, ((GuildMessageChannel) channel).deleteMessagesByIds(idStrings), true).handle((v, ex) -> {
+                if (ex != null) {
+                    failed += ids.size();
+                }
+                else {
+                    deleted += ids.size();
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Deletes one message at a time, waiting for each to complete, so that the channel's rate limit bucket paces the deletions
+         * rather than flooding the requester queue.
+         */
+        public CompletableFuture<Void> deleteSingle(List<Long> ids, int index) {
+            if (index >= ids.size()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return DiscordCommandUtils.submit(connection, channel.deleteMessageById(ids.get(index)), true).handle((v, ex) -> {
+                if (ex != null) {
+                    failed++;
+                }
+                else {
+                    deleted++;
+                }
+                return null;
+            }).thenCompose(v -> deleteSingle(ids, index + 1));
+        }
+    }
+
+    public static void autoExecute(ScriptEntry scriptEntry,
+                                   @ArgPrefixed @ArgName("id") @ArgDefaultNull DiscordBotTag bot,
+                                   @ArgPrefixed @ArgName("channel") DiscordChannelTag channel,
+                                   @ArgPrefixed @ArgName("limit") @ArgDefaultText("100") int limit,
+                                   @ArgPrefixed @ArgName("user") @ArgDefaultNull DiscordUserTag user,
+                                   @ArgPrefixed @ArgName("matcher") @ArgDefaultNull String matcher,
+                                   @ArgPrefixed @ArgName("min_age") @ArgDefaultNull DurationTag minAge,
+                                   @ArgPrefixed @ArgName("max_age") @ArgDefaultNull DurationTag maxAge) {
+        bot = DiscordCommandUtils.inferBot(bot, channel, user);
+        if (limit < 1) {
+            throw new InvalidArgumentsRuntimeException("Limit must be at least 1.");
+        }
+        DiscordConnection connection = bot.getConnection();
+        Channel channelObj = connection.getChannel(channel.channel_id);
+        if (!(channelObj instanceof MessageChannel messageChannel)) {
+            throw new InvalidArgumentsRuntimeException("Invalid message channel ID given.");
+        }
+        OffsetDateTime now = OffsetDateTime.now();
+        PurgeProcess process = new PurgeProcess();
+        process.connection = connection;
+        process.channel = messageChannel;
+        process.remaining = limit;
+        process.userId = user == null ? 0 : user.user_id;
+        process.matcher = matcher == null ? null : ScriptEvent.createMatcher(matcher);
+        process.newestAllowed = minAge == null ? null : now.minusNanos(minAge.getMilliseconds() * 1_000_000L);
+        process.oldestAllowed = maxAge == null ? null : now.minusNanos(maxAge.getMilliseconds() * 1_000_000L);
+        process.bulkCutoff = messageChannel instanceof GuildMessageChannel ? now.minusSeconds(BULK_DELETE_MAX_AGE_SECONDS) : null;
+        DiscordCommandUtils.cleanWait(scriptEntry, process.nextPage().thenRun(() -> {
+            scriptEntry.saveObject("deleted_count", new ElementTag(process.deleted));
+            scriptEntry.saveObject("scanned_count", new ElementTag(process.scanned));
+            scriptEntry.saveObject("failed_count", new ElementTag(process.failed));
+        }));
+    }
+}
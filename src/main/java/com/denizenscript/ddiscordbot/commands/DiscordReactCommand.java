@@ -1,6 +1,7 @@
 package com.denizenscript.ddiscordbot.commands;
 
 import com.denizenscript.ddiscordbot.DiscordCommandUtils;
+import com.denizenscript.ddiscordbot.DiscordConnection;
 import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.denizencore.exceptions.InvalidArgumentsRuntimeException;
 import com.denizenscript.denizencore.objects.core.ElementTag;
@@ -11,9 +12,10 @@ import com.denizenscript.denizencore.scripts.commands.generator.ArgDefaultNull;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgName;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgPrefixed;
 import com.denizenscript.denizencore.utilities.CoreUtilities;
-import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.entities.emoji.Emoji;
 import net.dv8tion.jda.api.entities.emoji.RichCustomEmoji;
 import net.dv8tion.jda.api.requests.RestAction;
@@ -87,7 +89,7 @@ public class DiscordReactCommand extends AbstractCommand implements Holdable {
                                    @ArgPrefixed @ArgDefaultNull @ArgName("user") DiscordUserTag user,
                                    @ArgPrefixed @ArgName("reaction") ElementTag reaction) {
         bot = DiscordCommandUtils.inferBot(bot, channel, message, user);
-        JDA client = bot.getConnection().client;
+        DiscordConnection connection = bot.getConnection();
         message = new DiscordMessageTag(message.bot, message.channel_id, message.message_id);
         if (message.channel_id == 0) {
             if (channel != null) {
@@ -98,21 +100,25 @@ public class DiscordReactCommand extends AbstractCommand implements Holdable {
             }
         }
         message.bot = bot.bot;
-        Message msg = message.getMessage();
-        if (msg == null) {
-            throw new InvalidArgumentsRuntimeException("Unknown message, cannot add reaction.");
+        MessageChannel chan = message.getChannel();
+        if (chan == null) {
+            throw new InvalidArgumentsRuntimeException("Unknown channel, cannot add reaction.");
         }
+        long messageId = message.message_id;
         Emoji emoji;
         boolean clearAll = false;
         if (reaction.isInt()) {
-            emoji = client.getEmojiById(reaction.asLong());
+            emoji = connection.fromShards(shard -> shard.getEmojiById(reaction.asLong()));
         }
         else {
             if (CoreUtilities.toLowerCase(reaction.asString()).equals("all")) {
                 clearAll = true;
             }
-            List<RichCustomEmoji> emotesPossible = client.getEmojisByName(reaction.asString(), true);
-            if (!emotesPossible.isEmpty()) {
+            List<RichCustomEmoji> emotesPossible = connection.fromShards(shard -> {
+                List<RichCustomEmoji> found = shard.getEmojisByName(reaction.asString(), true);
+                return found.isEmpty() ? null : found;
+            });
+            if (emotesPossible != null) {
                 emoji = emotesPossible.get(0);
             }
             else {
@@ -122,23 +128,29 @@ public class DiscordReactCommand extends AbstractCommand implements Holdable {
         if (emoji == null && !clearAll) {
             throw new InvalidArgumentsRuntimeException("Invalid emoji!");
         }
+        final DiscordMessageTag finalMessage = message;
         DiscordCommandUtils.cleanWait(scriptEntry, switch (instruction) {
             case ADD -> {
                 if (emoji == null) {
                     throw new InvalidArgumentsRuntimeException("Cannot add reaction 'all' - not a real reaction.");
                 }
-                yield msg.addReaction(emoji);
+                yield chan.addReactionById(messageId, emoji);
             }
             case REMOVE -> {
                 if (user != null) {
-                    User userObj = client.getUserById(user.user_id);
+                    User userObj = connection.getUserById(user.user_id);
                     if (userObj == null) {
                         throw new InvalidArgumentsRuntimeException("Cannot remove reaction from unknown user ID.");
                     }
                     if (emoji != null) {
-                        yield msg.removeReaction(emoji, userObj);
+                        yield requireGuildChannel(chan).removeReactionById(messageId, emoji, userObj);
                     }
                     else {
+                        // Only this case needs the full message, to know which reactions the user has.
+                        Message msg = finalMessage.getMessage();
+                        if (msg == null) {
+                            throw new InvalidArgumentsRuntimeException("Unknown message, cannot remove reactions.");
+                        }
                         yield RestAction.allOf(msg.getReactions().stream()
                                 .filter(r -> r.retrieveUsers().stream().anyMatch(u -> u.getIdLong() == userObj.getIdLong()))
                                 .map(r -> r.removeReaction(userObj)).collect(Collectors.toSet()));
@@ -146,14 +158,21 @@ public class DiscordReactCommand extends AbstractCommand implements Holdable {
                 }
                 else {
                     if (emoji != null) {
-                        yield msg.removeReaction(emoji);
+                        yield chan.removeReactionById(messageId, emoji);
                     }
                     else {
-                        yield msg.clearReactions();
+                        yield requireGuildChannel(chan).clearReactionsById(messageId);
                     }
                 }
             }
-            case CLEAR -> clearAll ? msg.clearReactions() : msg.clearReactions(emoji);
-        });
+            case CLEAR -> clearAll ? requireGuildChannel(chan).clearReactionsById(messageId) : requireGuildChannel(chan).clearReactionsById(messageId, emoji);
+        }, true);
+    }
+
+    static GuildMessageChannel requireGuildChannel(MessageChannel channel) {
+        if (!(channel instanceof GuildMessageChannel guildChannel)) {
+            throw new InvalidArgumentsRuntimeException("Cannot manage other users' reactions outside of a group channel.");
+        }
+        return guildChannel;
     }
 }
@@ -13,7 +13,8 @@ import com.denizenscript.denizencore.scripts.commands.generator.ArgDefaultNull;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgDefaultText;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgName;
 import com.denizenscript.denizencore.scripts.commands.generator.ArgPrefixed;
-import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.UserSnowflake;
 import net.dv8tion.jda.api.requests.restaction.AuditableRestAction;
 
 import java.util.concurrent.TimeUnit;
@@ -79,19 +80,21 @@ public class DiscordTimeoutCommand extends AbstractCommand implements Holdable {
         if (group.bot == null) {
             group = new DiscordGroupTag(bot.bot, group.guild_id);
         }
-        Member member = group.getGuild().getMemberById(user.user_id);
-        if (member == null) {
-            throw new InvalidArgumentsRuntimeException("Invalid user! Are they in the Discord Group?");
+        Guild guild = group.getGuild();
+        if (guild == null) {
+            throw new InvalidArgumentsRuntimeException("Invalid group!");
         }
+        // Timeouts only need the user's ID, so this works even if the member isn't cached.
+        UserSnowflake member = UserSnowflake.fromId(user.user_id);
         DiscordCommandUtils.cleanWait(scriptEntry, switch (instruction) {
             case ADD -> {
-                AuditableRestAction<Void> timeoutAction = member.timeoutFor(duration.getSecondsAsInt(), TimeUnit.SECONDS);
+                AuditableRestAction<Void> timeoutAction = guild.timeoutFor(member, duration.getSecondsAsInt(), TimeUnit.SECONDS);
                 if (reason != null) {
                     timeoutAction = timeoutAction.reason(reason);
                 }
                 yield timeoutAction;
             }
-            case REMOVE -> member.removeTimeout();
-        });
+            case REMOVE -> guild.removeTimeout(member);
+        }, true);
     }
 }
@@ -0,0 +1,41 @@
+package com.denizenscript.ddiscordbot.events;
+
+import com.denizenscript.ddiscordbot.DiscordScriptEvent;
+import com.denizenscript.denizencore.objects.ObjectTag;
+import com.denizenscript.denizencore.objects.core.ElementTag;
+
+public class DiscordBotReadyScriptEvent extends DiscordScriptEvent {
+
+    // <--[event]
+    // @Events
+    // discord bot ready
+    //
+    // @Switch for:<bot> to only process the event for a specified Discord bot.
+    //
+    // @Triggers when a Discord bot has finished connecting (after <@link command discordconnect>), and is ready for use.
+    //
+    // @Plugin dDiscordBot
+    //
+    // @Group Discord
+    //
+    // @Context
+    // <context.bot> returns the relevant DiscordBotTag.
+    // <context.group_count> returns the number of groups the bot is in.
+    // -->
+
+    public static DiscordBotReadyScriptEvent instance;
+
+    public DiscordBotReadyScriptEvent() {
+        instance = this;
+        registerCouldMatcher("discord bot ready");
+    }
+
+    @Override
+    public ObjectTag getContext(String name) {
+        switch (name) {
+            case "group_count":
+                return new ElementTag(getConnection().getGuilds().size());
+        }
+        return super.getContext(name);
+    }
+}
@@ -1,5 +1,6 @@
 package com.denizenscript.ddiscordbot.events;
 
+import com.denizenscript.ddiscordbot.DiscordComponentRouter;
 import com.denizenscript.ddiscordbot.DiscordScriptEvent;
 import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.denizencore.objects.ObjectTag;
@@ -38,21 +39,27 @@ public class DiscordButtonClickedScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord button clicked");
         registerSwitches("channel", "group", "id");
+        componentRouter = new DiscordComponentRouter("id");
     }
 
     public ButtonInteractionEvent getEvent() {
         return (ButtonInteractionEvent) event;
     }
 
+    @Override
+    public String getComponentId() {
+        return getEvent().getButton().getId();
+    }
+
     @Override
     public boolean matches(ScriptPath path) {
-        if (!tryChannel(path, getEvent().getChannel())) {
+        if (!tryComponentId(path)) {
             return false;
         }
-        if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
+        if (!tryChannel(path, getEvent().getChannel())) {
             return false;
         }
-        if (!runGenericSwitchCheck(path, "id", getEvent().getButton().getId())) {
+        if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
             return false;
         }
         return super.matches(path);
@@ -45,7 +45,7 @@ public class DiscordChannelCreateScriptEvent extends DiscordScriptEvent {
         if (!tryGuild(path, getEvent().getGuild())) {
             return false;
         }
-        if (!runGenericSwitchCheck(path, "type", getEvent().getChannelType().name())) {
+        if (!trySwitch(path, "type", getEvent().getChannelType().name())) {
             return false;
         }
         return super.matches(path);
@@ -77,7 +77,7 @@ public class DiscordCommandAutocompleteScriptEvent extends DiscordCommandInterac
 
     @Override
     public boolean matches(ScriptPath path) {
-        if (!runGenericSwitchCheck(path, "option", getAutocompleteEvent().getFocusedOption().getName())) {
+        if (!trySwitch(path, "option", getAutocompleteEvent().getFocusedOption().getName())) {
             return false;
         }
         return super.matches(path);
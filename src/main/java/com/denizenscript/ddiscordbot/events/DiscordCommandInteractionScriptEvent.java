@@ -31,7 +31,7 @@ public abstract class DiscordCommandInteractionScriptEvent extends DiscordScript
         if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
             return false;
         }
-        if (!runGenericSwitchCheck(path, "name", CoreUtilities.replace(getPayload().getName(), " ", "_"))) {
+        if (!trySwitch(path, "name", CoreUtilities.replace(getPayload().getName(), " ", "_"))) {
             return false;
         }
         return super.matches(path);
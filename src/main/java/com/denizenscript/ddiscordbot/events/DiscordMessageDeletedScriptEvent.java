@@ -12,6 +12,7 @@ import com.denizenscript.denizencore.tags.TagContext;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 public class DiscordMessageDeletedScriptEvent extends DiscordScriptEvent {
 
@@ -46,6 +47,7 @@ public class DiscordMessageDeletedScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord message deleted");
         registerSwitches("channel", "group");
+        requireIntents(GatewayIntent.GUILD_MESSAGES, GatewayIntent.DIRECT_MESSAGES);
     }
 
     public MessageDeleteEvent getEvent() {
@@ -14,6 +14,7 @@ import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 public class DiscordMessageModifiedScriptEvent extends DiscordScriptEvent {
 
@@ -49,6 +50,7 @@ public class DiscordMessageModifiedScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord message modified");
         registerSwitches("channel", "group");
+        requireIntents(GatewayIntent.GUILD_MESSAGES, GatewayIntent.DIRECT_MESSAGES, GatewayIntent.MESSAGE_CONTENT);
     }
 
     public MessageUpdateEvent getEvent() {
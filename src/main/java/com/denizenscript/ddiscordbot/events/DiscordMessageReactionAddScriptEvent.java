@@ -4,6 +4,7 @@ import com.denizenscript.ddiscordbot.DiscordScriptEvent;
 import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.denizencore.objects.ObjectTag;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 public class DiscordMessageReactionAddScriptEvent extends DiscordScriptEvent {
 
@@ -37,6 +38,7 @@ public class DiscordMessageReactionAddScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord message reaction added");
         registerSwitches("channel", "group");
+        requireIntents(GatewayIntent.GUILD_MESSAGE_REACTIONS, GatewayIntent.DIRECT_MESSAGE_REACTIONS);
     }
 
     public MessageReactionAddEvent getEvent() {
@@ -13,6 +13,7 @@ import com.denizenscript.denizencore.tags.TagContext;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 public class DiscordMessageReceivedScriptEvent extends DiscordScriptEvent {
 
@@ -45,6 +46,7 @@ public class DiscordMessageReceivedScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord message received");
         registerSwitches("channel", "group", "message");
+        requireIntents(GatewayIntent.GUILD_MESSAGES, GatewayIntent.DIRECT_MESSAGES, GatewayIntent.MESSAGE_CONTENT);
     }
 
     public MessageReceivedEvent getEvent() {
@@ -59,7 +61,7 @@ public class DiscordMessageReceivedScriptEvent extends DiscordScriptEvent {
         if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
             return false;
         }
-        if (!runGenericSwitchCheck(path, "message", getEvent().getMessage().getContentRaw())) {
+        if (!trySwitch(path, "message", getEvent().getMessage().getContentRaw())) {
             return false;
         }
         return super.matches(path);
@@ -1,5 +1,6 @@
 package com.denizenscript.ddiscordbot.events;
 
+import com.denizenscript.ddiscordbot.DiscordComponentRouter;
 import com.denizenscript.ddiscordbot.DiscordScriptEvent;
 import com.denizenscript.ddiscordbot.objects.DiscordChannelTag;
 import com.denizenscript.ddiscordbot.objects.DiscordGroupTag;
@@ -46,21 +47,27 @@ public class DiscordModalSubmittedScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord modal submitted");
         registerSwitches("channel", "group", "name");
+        componentRouter = new DiscordComponentRouter("name");
     }
 
     public ModalInteractionEvent getEvent() {
         return (ModalInteractionEvent) event;
     }
 
+    @Override
+    public String getComponentId() {
+        return getEvent().getModalId();
+    }
+
     @Override
     public boolean matches(ScriptPath path) {
-        if (!tryChannel(path, getEvent().getChannel())) {
+        if (!tryComponentId(path)) {
             return false;
         }
-        if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
+        if (!tryChannel(path, getEvent().getChannel())) {
             return false;
         }
-        if (!runGenericSwitchCheck(path, "name", getEvent().getModalId())) {
+        if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
             return false;
         }
         return super.matches(path);
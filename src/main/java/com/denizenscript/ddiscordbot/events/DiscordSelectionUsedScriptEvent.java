@@ -1,5 +1,6 @@
 package com.denizenscript.ddiscordbot.events;
 
+import com.denizenscript.ddiscordbot.DiscordComponentRouter;
 import com.denizenscript.ddiscordbot.DiscordScriptEvent;
 import com.denizenscript.ddiscordbot.objects.*;
 import com.denizenscript.denizencore.objects.ObjectTag;
@@ -40,21 +41,27 @@ public class DiscordSelectionUsedScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord selection used");
         registerSwitches("channel", "group", "id");
+        componentRouter = new DiscordComponentRouter("id");
     }
 
     public GenericSelectMenuInteractionEvent getEvent() {
         return (GenericSelectMenuInteractionEvent) event;
     }
 
+    @Override
+    public String getComponentId() {
+        return getEvent().getSelectMenu().getId();
+    }
+
     @Override
     public boolean matches(ScriptPath path) {
-        if (!tryChannel(path, getEvent().getChannel())) {
+        if (!tryComponentId(path)) {
             return false;
         }
-        if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
+        if (!tryChannel(path, getEvent().getChannel())) {
             return false;
         }
-        if (!runGenericSwitchCheck(path, "id", getEvent().getSelectMenu().getId())) {
+        if (!tryGuild(path, getEvent().isFromGuild() ? getEvent().getGuild() : null)) {
             return false;
         }
         return super.matches(path);
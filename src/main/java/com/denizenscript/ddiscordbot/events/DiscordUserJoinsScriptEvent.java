@@ -5,6 +5,7 @@ import com.denizenscript.ddiscordbot.objects.DiscordGroupTag;
 import com.denizenscript.ddiscordbot.objects.DiscordUserTag;
 import com.denizenscript.denizencore.objects.ObjectTag;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 public class DiscordUserJoinsScriptEvent extends DiscordScriptEvent {
 
@@ -33,6 +34,7 @@ public class DiscordUserJoinsScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord user joins");
         registerSwitches("group");
+        requireIntents(GatewayIntent.GUILD_MEMBERS);
     }
 
     public GuildMemberJoinEvent getEvent() {
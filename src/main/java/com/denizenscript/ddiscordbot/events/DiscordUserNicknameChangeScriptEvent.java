@@ -6,6 +6,7 @@ import com.denizenscript.ddiscordbot.objects.DiscordUserTag;
 import com.denizenscript.denizencore.objects.ObjectTag;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import net.dv8tion.jda.api.events.guild.member.update.GuildMemberUpdateNicknameEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 public class DiscordUserNicknameChangeScriptEvent extends DiscordScriptEvent {
 
@@ -36,6 +37,7 @@ public class DiscordUserNicknameChangeScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord user nickname changes");
         registerSwitches("group");
+        requireIntents(GatewayIntent.GUILD_MEMBERS);
     }
 
     public GuildMemberUpdateNicknameEvent getEvent() {
@@ -10,6 +10,7 @@ import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.events.guild.member.GenericGuildMemberEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
 import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.requests.GatewayIntent;
 
 import java.util.List;
 
@@ -44,6 +45,7 @@ public class DiscordUserRoleChangeScriptEvent extends DiscordScriptEvent {
         instance = this;
         registerCouldMatcher("discord user role changes");
         registerSwitches("group");
+        requireIntents(GatewayIntent.GUILD_MEMBERS);
     }
 
     public boolean isAdding() {
@@ -1,18 +1,31 @@
 package com.denizenscript.ddiscordbot.objects;
 
+import com.denizenscript.ddiscordbot.CacheHelper;
+import com.denizenscript.ddiscordbot.DiscordBulkJob;
 import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.DiscordEventFilter;
+import com.denizenscript.ddiscordbot.DiscordFlagExpiry;
+import com.denizenscript.ddiscordbot.DiscordRestPolicy;
+import com.denizenscript.ddiscordbot.DiscordThreadPools;
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
+import com.denizenscript.denizencore.objects.core.MapTag;
 import com.denizenscript.denizencore.tags.ObjectTagProcessor;
 import com.denizenscript.denizencore.tags.Attribute;
 import com.denizenscript.denizencore.tags.TagContext;
 import com.denizenscript.denizencore.utilities.CoreUtilities;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DiscordBotTag implements ObjectTag, FlaggableObject, Adjustable {
 
@@ -103,6 +116,38 @@ public class DiscordBotTag implements ObjectTag, FlaggableObject, Adjustable {
 
         });
 
+        // <--[tag]
+        // @attribute <DiscordBotTag.is_ready>
+        // @returns ElementTag(Boolean)
+        // @plugin dDiscordBot
+        // @description
+        // Returns whether the bot has finished connecting and is ready for use. See also <@link event discord bot ready>.
+        // -->
+        tagProcessor.registerTag(ElementTag.class, "is_ready", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            return new ElementTag(connection != null && connection.ready.isDone() && !connection.ready.isCompletedExceptionally());
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.intents>
+        // @returns ListTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns the list of gateway intents the bot is connected with.
+        // For bots connected with "intents:auto" (see <@link command discordconnect>), this is the set computed from the Discord events currently in use.
+        // -->
+        tagProcessor.registerTag(ListTag.class, "intents", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null || connection.client == null) {
+                return null;
+            }
+            ListTag result = new ListTag();
+            for (GatewayIntent intent : connection.client.getGatewayIntents()) {
+                result.add(intent.name());
+            }
+            return result;
+        });
+
         // <--[tag]
         // @attribute <DiscordBotTag.self_user>
         // @returns DiscordUserTag
@@ -132,7 +177,7 @@ public class DiscordBotTag implements ObjectTag, FlaggableObject, Adjustable {
                 return null;
             }
             ListTag list = new ListTag();
-            for (Guild guild : connection.client.getGuilds()) {
+            for (Guild guild : connection.getGuilds()) {
                 list.addObject(new DiscordGroupTag(object.bot, guild));
             }
             return list;
@@ -157,6 +202,197 @@ public class DiscordBotTag implements ObjectTag, FlaggableObject, Adjustable {
             return list;
         });
 
+        // <--[tag]
+        // @attribute <DiscordBotTag.private_channel_cache_stats>
+        // @returns MapTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns statistics about the bot's cache of direct-message channels, as a map with keys
+        // "size" (number of users cached), "hits", "misses", and "hit_rate" (a decimal number from 0 to 1).
+        // The cache is filled by DMs the bot receives or sends, and its size is controlled by the "Private channel cache size" option in the dDiscordBot config.
+        // -->
+        tagProcessor.registerTag(MapTag.class, "private_channel_cache_stats", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null) {
+                return null;
+            }
+            CacheHelper cache = connection.cache;
+            MapTag result = new MapTag();
+            synchronized (cache.privateChannels) {
+                long total = cache.privateChannelHits + cache.privateChannelMisses;
+                result.putObject("size", new ElementTag(cache.privateChannels.size()));
+                result.putObject("hits", new ElementTag(cache.privateChannelHits));
+                result.putObject("misses", new ElementTag(cache.privateChannelMisses));
+                result.putObject("hit_rate", new ElementTag(total == 0 ? 0 : (double) cache.privateChannelHits / total));
+            }
+            return result;
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.shard_stats>
+        // @returns ListTag(MapTag)
+        // @plugin dDiscordBot
+        // @description
+        // Returns a list of statistics for each of the bot's shards (see <@link command discordconnect>), or a single entry if the bot isn't sharded.
+        // Each entry is a map with keys "id" (the shard number, starting at 0), "status" (the JDA connection status, like CONNECTED),
+        // "ping" (the gateway ping in milliseconds), "groups" (the number of groups on that shard), "events" (the total number of events received),
+        // and "event_rate" (events received per second, averaged since the previous time this tag was read, or over the last second at least).
+        // -->
+        tagProcessor.registerTag(ListTag.class, "shard_stats", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null) {
+                return null;
+            }
+            ListTag result = new ListTag();
+            for (JDA shard : connection.getShards()) {
+                int id = shard.getShardInfo().getShardId();
+                DiscordConnection.ShardStats stats = connection.shardStats.computeIfAbsent(id, i -> new DiscordConnection.ShardStats());
+                MapTag map = new MapTag();
+                map.putObject("id", new ElementTag(id));
+                map.putObject("status", new ElementTag(shard.getStatus().name()));
+                map.putObject("ping", new ElementTag(shard.getGatewayPing()));
+                map.putObject("groups", new ElementTag(shard.getGuildCache().size()));
+                map.putObject("events", new ElementTag(stats.events.sum()));
+                map.putObject("event_rate", new ElementTag(stats.sampleEventRate()));
+                result.addObject(map);
+            }
+            return result;
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.dropped_events>
+        // @returns MapTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns the number of events dropped because they were in a group or channel the bot ignores (see <@link command discordconnect>),
+        // as a map with key "total" and a key for each type of event dropped (like "MessageReceivedEvent").
+        // -->
+        tagProcessor.registerTag(MapTag.class, "dropped_events", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null) {
+                return null;
+            }
+            MapTag result = new MapTag();
+            DiscordEventFilter filter = connection.eventFilter;
+            result.putObject("total", new ElementTag(filter == null ? 0 : filter.getTotalDropped()));
+            if (filter != null) {
+                for (Map.Entry<String, LongAdder> entry : filter.dropped.entrySet()) {
+                    result.putObject(entry.getKey(), new ElementTag(entry.getValue().sum()));
+                }
+            }
+            return result;
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.rest_stats>
+        // @returns MapTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns statistics about the bot's requests to Discord, as a map with keys
+        // "circuit_state" (CLOSED when requests are sent normally, OPEN when requests are failing fast after repeated Discord failures, or HALF_OPEN when a trial request is being allowed through),
+        // "consecutive_failures", "retries" (total retried requests), "fail_fast_count" (total requests refused while open), and "trips" (total times the circuit has opened).
+        // The retry and circuit breaker behavior is controlled by options in the dDiscordBot config.
+        // -->
+        tagProcessor.registerTag(MapTag.class, "rest_stats", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null) {
+                return null;
+            }
+            DiscordRestPolicy policy = connection.restPolicy;
+            MapTag result = new MapTag();
+            synchronized (policy) {
+                result.putObject("circuit_state", new ElementTag(policy.getState().name()));
+                result.putObject("consecutive_failures", new ElementTag(policy.consecutiveFailures));
+                result.putObject("retries", new ElementTag(policy.retries));
+                result.putObject("fail_fast_count", new ElementTag(policy.fastFails));
+                result.putObject("trips", new ElementTag(policy.trips));
+            }
+            return result;
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.thread_pool_stats>
+        // @returns MapTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns statistics about the thread pools the bot uses to talk to Discord (see the "thread_pools" option of <@link command discordconnect>),
+        // as a map with keys "callback", "rate_limit", "gateway", and (if a shared event pool is in use) "event".
+        // Each value is a map with key "type" (fixed, scheduled, fork_join, or virtual), and where available,
+        // "active" (threads currently running a task), "threads" (threads started), "largest_threads", "max_threads", "queued" (tasks waiting for a thread),
+        // "completed" (total tasks finished), and "submitted" (total tasks started, for virtual threads).
+        // When shared thread pools are used, the same pools (and statistics) are shared by every bot using them.
+        // -->
+        tagProcessor.registerTag(MapTag.class, "thread_pool_stats", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null || connection.client == null) {
+                return null;
+            }
+            MapTag result = new MapTag();
+            result.putObject("callback", DiscordThreadPools.describe(connection.client.getCallbackPool()));
+            result.putObject("rate_limit", DiscordThreadPools.describe(connection.client.getRateLimitPool()));
+            result.putObject("gateway", DiscordThreadPools.describe(connection.client.getGatewayPool()));
+            DiscordThreadPools.Mode mode = connection.connectOptions == null ? DiscordThreadPools.Mode.DEFAULT : connection.connectOptions.threadPools;
+            ExecutorService eventPool = mode == DiscordThreadPools.Mode.DEFAULT ? null : DiscordThreadPools.getExistingEventPool(mode);
+            if (eventPool != null) {
+                result.putObject("event", DiscordThreadPools.describe(eventPool));
+            }
+            return result;
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.flag_expiry_stats>
+        // @returns MapTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns statistics about the background removal of expired flags on the bot's messages and reactions,
+        // as a map with keys "pending" (expiring flags being tracked), "removed" (total expired flags removed),
+        // and "purged" (total flag sets removed because their message or channel was deleted).
+        // The time between removals is controlled by the "Flag expiry sweep interval" option in the dDiscordBot config.
+        // -->
+        tagProcessor.registerTag(MapTag.class, "flag_expiry_stats", (attribute, object) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null) {
+                return null;
+            }
+            DiscordFlagExpiry expiry = connection.flagExpiry;
+            MapTag result = new MapTag();
+            result.putObject("pending", new ElementTag(expiry.size()));
+            result.putObject("removed", new ElementTag(expiry.removed));
+            result.putObject("purged", new ElementTag(expiry.purged));
+            return result;
+        });
+
+        // <--[tag]
+        // @attribute <DiscordBotTag.bulk_job[<name>]>
+        // @returns MapTag
+        // @plugin dDiscordBot
+        // @description
+        // Returns the progress of the bulk job with the given name (see <@link command discordbulk>), as a map with keys
+        // "status" (RUNNING, PAUSED, CANCELLED, or FINISHED), "action", "total", "completed", "succeeded", "failed", and "in_flight".
+        // Returns null if no job by that name has been started or resumed since the bot connected.
+        // -->
+        tagProcessor.registerTag(MapTag.class, ElementTag.class, "bulk_job", (attribute, object, name) -> {
+            DiscordConnection connection = object.getConnection();
+            if (connection == null) {
+                return null;
+            }
+            DiscordBulkJob job = connection.bulkJobs.get(CoreUtilities.toLowerCase(name.asString()));
+            if (job == null) {
+                return null;
+            }
+            MapTag result = new MapTag();
+            synchronized (job) {
+                result.putObject("status", new ElementTag(job.status.name()));
+                result.putObject("action", new ElementTag(job.action.name()));
+                result.putObject("total", new ElementTag(job.getTotal()));
+                result.putObject("completed", new ElementTag(job.getCompleted()));
+                result.putObject("succeeded", new ElementTag(job.succeeded));
+                result.putObject("failed", new ElementTag(job.failed));
+                result.putObject("in_flight", new ElementTag(job.inFlight));
+            }
+            return result;
+        });
+
         // <--[tag]
         // @attribute <DiscordBotTag.group[<name>]>
         // @returns DiscordGroupTag
@@ -174,7 +410,7 @@ public class DiscordBotTag implements ObjectTag, FlaggableObject, Adjustable {
             }
             String matchString = CoreUtilities.toLowerCase(attribute.getParam());
             Guild bestMatch = null;
-            for (Guild guild : connection.client.getGuilds()) {
+            for (Guild guild : connection.getGuilds()) {
                 String guildName = CoreUtilities.toLowerCase(guild.getName());
                 if (matchString.equals(guildName)) {
                     bestMatch = guild;
@@ -92,6 +92,18 @@ public class DiscordButtonTag implements ObjectTag {
 
     public MapTag buttonData;
 
+    /**
+     * The built button, cached as button data is never changed after the tag is created ('with' tags return a copy).
+     */
+    public Button cachedButton;
+
+    public Button getBuiltButton() {
+        if (cachedButton == null) {
+            cachedButton = build();
+        }
+        return cachedButton;
+    }
+
     public static HashSet<String> acceptedWithKeys = new HashSet<>(Arrays.asList(
         "style", "id", "label", "emoji", "disabled"
     ));
@@ -2,9 +2,9 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
 import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
-import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
@@ -130,7 +130,7 @@ public class DiscordCommandTag implements ObjectTag, FlaggableObject, Adjustable
         if (guild_id == 0) {
             return null;
         }
-        guild = getBot().client.getGuildById(guild_id);
+        guild = getBot().getGuildById(guild_id);
         return guild;
     }
 
@@ -162,7 +162,7 @@ public class DiscordCommandTag implements ObjectTag, FlaggableObject, Adjustable
 
     @Override
     public AbstractFlagTracker getFlagTracker() {
-        return new RedirectionFlagTracker(getBot().flags, "__commands." + command_id);
+        return getBot().getFlagTracker(DiscordFlagStore.Namespace.COMMANDS, 0, command_id);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package com.denizenscript.ddiscordbot.objects;
 
+import com.denizenscript.ddiscordbot.DiscordEmbedTemplate;
 import com.denizenscript.denizencore.objects.Fetchable;
 import com.denizenscript.denizencore.objects.ObjectTag;
 import com.denizenscript.denizencore.objects.core.*;
@@ -14,6 +15,7 @@ import net.dv8tion.jda.api.entities.MessageEmbed;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class DiscordEmbedTag implements ObjectTag {
@@ -30,6 +32,14 @@ public class DiscordEmbedTag implements ObjectTag {
     // @description
     // A DiscordEmbedTag is an object that represents a Discord embed for use with dDiscordBot.
     //
+    // An embed can also be used as a template: any text within it (such as the title, description, author name, footer, or field titles and values)
+    // can contain placeholders written like "{{key}}", which are filled in when the embed is sent with "template_values:<map>"
+    // in <@link command discordmessage> or <@link command discordinteraction>.
+    // This is useful for embeds that are sent or edited frequently with only a few changing values, like a leaderboard.
+    // A placeholder with no value in the map is left as-is in the sent embed, and shows an error.
+    // The parsed form of each template is cached by its content, so sending the same template repeatedly doesn't re-parse it, even when it is read fresh from a definition or flag each time.
+    // Placeholders cannot be used in URLs, as Discord requires those to be valid URLs.
+    //
     // -->
 
     @Fetchable("discordembed")
@@ -41,11 +51,27 @@ public class DiscordEmbedTag implements ObjectTag {
         if (map == null) {
             return null;
         }
-        return new DiscordEmbedTag(map);
+        DiscordEmbedTag embed = new DiscordEmbedTag(map);
+        embed.sourceText = string;
+        return embed;
     }
 
+    /**
+     * Returns a copy of this embed that shares its cached builds, as the copy has the same content.
+     */
     @Override
     public DiscordEmbedTag duplicate() {
+        DiscordEmbedTag embed = new DiscordEmbedTag(embedData.duplicate());
+        embed.sourceText = sourceText;
+        embed.cachedEmbed = cachedEmbed;
+        embed.cachedTemplate = cachedTemplate;
+        return embed;
+    }
+
+    /**
+     * Returns a copy of this embed without any cached builds, for tags that change the copy's content.
+     */
+    public DiscordEmbedTag duplicateForEdit() {
         return new DiscordEmbedTag(embedData.duplicate());
     }
 
@@ -200,6 +226,63 @@ public class DiscordEmbedTag implements ObjectTag {
 
     public MapTag embedData;
 
+    /**
+     * Built forms of this embed, cached on first use. Embed tags are never modified after creation (tags that change an embed return a copy),
+     * so sending the same embed object repeatedly reuses the same build.
+     */
+    public MessageEmbed cachedEmbed;
+
+    public DiscordEmbedTemplate cachedTemplate;
+
+    /**
+     * The text this embed was parsed from, if it came from text (such as a flag), used as a cheap template cache key.
+     */
+    public String sourceText;
+
+    public MessageEmbed getBuiltEmbed(TagContext context) {
+        if (cachedEmbed == null) {
+            cachedEmbed = build(context).build();
+        }
+        return cachedEmbed;
+    }
+
+    public static final int TEMPLATE_CACHE_SIZE = 256;
+
+    /**
+     * Parsed templates by the text of their embed. Definitions give out a copy of an embed each time they're read, which keeps the original's template,
+     * but flags re-parse the embed from its saved text each time, so the template is found here by that text instead.
+     */
+    public static final LinkedHashMap<String, DiscordEmbedTemplate> templateCache = new LinkedHashMap<>(TEMPLATE_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DiscordEmbedTemplate> eldest) {
+            return size() > TEMPLATE_CACHE_SIZE;
+        }
+    };
+
+    public DiscordEmbedTemplate getTemplate(TagContext context) {
+        if (cachedTemplate == null) {
+            // Only re-serialize the embed when it wasn't parsed from text, as that costs about as much as parsing the template.
+            String key = sourceText != null ? sourceText : identify();
+            synchronized (templateCache) {
+                cachedTemplate = templateCache.get(key);
+            }
+            if (cachedTemplate == null) {
+                cachedTemplate = new DiscordEmbedTemplate(getBuiltEmbed(context));
+                synchronized (templateCache) {
+                    templateCache.put(key, cachedTemplate);
+                }
+            }
+        }
+        return cachedTemplate;
+    }
+
+    public MessageEmbed render(MapTag templateValues, TagContext context) {
+        if (templateValues == null) {
+            return getBuiltEmbed(context);
+        }
+        return getTemplate(context).render(templateValues);
+    }
+
     public static HashSet<String> acceptedWithKeys = new HashSet<>(Arrays.asList(
             "author_name", "author_url", "author_icon_url", "color", "description",
             "footer", "footer_icon", "image", "thumbnail", "timestamp", "title", "title_url", "fields"
@@ -216,7 +299,7 @@ public class DiscordEmbedTag implements ObjectTag {
         // Refer to <@link tag DiscordEmbedTag.with.as>.
         // -->
         tagProcessor.registerTag(DiscordEmbedTag.class, "with_map", (attribute, object) -> {
-            DiscordEmbedTag embed = object.duplicate();
+            DiscordEmbedTag embed = object.duplicateForEdit();
             if (!attribute.hasParam()) {
                 attribute.echoError("Invalid embed.with_map[...] tag: must have an input value.");
                 return null;
@@ -267,7 +350,7 @@ public class DiscordEmbedTag implements ObjectTag {
         // For fields, instead prefer <@link tag DiscordEmbedTag.add_field.value> and <@link tag DiscordEmbedTag.add_inline_field.value>.
         // -->
         tagProcessor.registerTag(DiscordEmbedTag.class, "with", (attribute, object) -> {
-            DiscordEmbedTag embed = object.duplicate();
+            DiscordEmbedTag embed = object.duplicateForEdit();
             if (!attribute.hasParam()) {
                 attribute.echoError("Invalid embed.with[...] tag: must have an input value.");
                 return null;
@@ -315,7 +398,7 @@ public class DiscordEmbedTag implements ObjectTag {
         // Returns a copy of this Embed tag, with a field added with the given title and value.
         // -->
         tagProcessor.registerTag(DiscordEmbedTag.class, "add_field", (attribute, object) -> {
-            DiscordEmbedTag embed = object.duplicate();
+            DiscordEmbedTag embed = object.duplicateForEdit();
             if (!attribute.hasParam()) {
                 attribute.echoError("Invalid embed.add_field[...] tag: must have an input title.");
                 return null;
@@ -346,7 +429,7 @@ public class DiscordEmbedTag implements ObjectTag {
         // Returns a copy of this Embed tag, with an inline field added with the given title and value.
         // -->
         tagProcessor.registerTag(DiscordEmbedTag.class, "add_inline_field", (attribute, object) -> {
-            DiscordEmbedTag embed = object.duplicate();
+            DiscordEmbedTag embed = object.duplicateForEdit();
             if (!attribute.hasParam()) {
                 attribute.echoError("Invalid embed.add_inline_field[...] tag: must have an input title.");
                 return null;
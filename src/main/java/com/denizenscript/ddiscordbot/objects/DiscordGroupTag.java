@@ -2,10 +2,10 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DiscordConnection;
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
-import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
@@ -113,7 +113,7 @@ public class DiscordGroupTag implements ObjectTag, FlaggableObject, Adjustable {
         if (guild != null) {
             return guild;
         }
-        guild = getBot().client.getGuildById(guild_id);
+        guild = getBot().getGuildById(guild_id);
         return guild;
     }
 
@@ -125,7 +125,7 @@ public class DiscordGroupTag implements ObjectTag, FlaggableObject, Adjustable {
 
     @Override
     public AbstractFlagTracker getFlagTracker() {
-        return new RedirectionFlagTracker(getBot().flags, "__guilds." + guild_id);
+        return getBot().getFlagTracker(DiscordFlagStore.Namespace.GUILDS, 0, guild_id);
     }
 
     @Override
@@ -244,6 +244,8 @@ public class DiscordGroupTag implements ObjectTag, FlaggableObject, Adjustable {
         // For input of only the username, return value might be unexpected if multiple members have the same username
         // (this happens more often than you might expect - many users accidentally join new Discord groups from the
         // web on a temporary web account, then rejoin on a local client with their 'real' account).
+        // Only members in the bot's cache are searched. If the bot doesn't cache every member (see the "member_cache" option of <@link command discordconnect>),
+        // this may return null for a member that is in the group.
         // -->
         tagProcessor.registerTag(DiscordUserTag.class, "member", (attribute, object) -> {
             if (!attribute.hasParam()) {
@@ -263,6 +265,9 @@ public class DiscordGroupTag implements ObjectTag, FlaggableObject, Adjustable {
                     return new DiscordUserTag(object.bot, user.getUser());
                 }
             }
+            if (!object.getGuild().isLoaded()) {
+                attribute.echoError("No cached member named '" + matchName + "'. Not every member of this group is cached (see the 'member_cache' option of 'discordconnect'), so they may still be in the group.");
+            }
             return null;
         });
 
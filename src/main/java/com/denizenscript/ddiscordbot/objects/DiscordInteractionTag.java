@@ -2,7 +2,6 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
 import com.denizenscript.ddiscordbot.DiscordConnection;
-import com.denizenscript.denizencore.DenizenCore;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
 import com.denizenscript.denizencore.flags.SavableMapFlagTracker;
@@ -11,18 +10,12 @@ import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.tags.Attribute;
 import com.denizenscript.denizencore.tags.ObjectTagProcessor;
 import com.denizenscript.denizencore.tags.TagContext;
-import com.denizenscript.denizencore.utilities.CoreUtilities;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
-import com.denizenscript.denizencore.utilities.scheduling.OneTimeSchedulable;
 import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.interactions.Interaction;
 import net.dv8tion.jda.api.interactions.commands.context.MessageContextInteraction;
 import net.dv8tion.jda.api.interactions.commands.context.UserContextInteraction;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 public class DiscordInteractionTag implements ObjectTag, FlaggableObject, Adjustable {
 
     // <--[ObjectType]
@@ -49,35 +42,57 @@ public class DiscordInteractionTag implements ObjectTag, FlaggableObject, Adjust
         if (string.startsWith("discordinteraction@")) {
             string = string.substring("discordinteraction@".length());
         }
-        if (string.contains("@")) {
+        if (string.indexOf('@') != -1) {
             return null;
         }
-        List<String> commaSplit = CoreUtilities.split(string, ',');
-        if (commaSplit.size() != 2) {
+        // Parsed in place rather than split, as this runs for every interaction tag reference in a script.
+        int comma = string.indexOf(',');
+        if (comma == -1 || string.indexOf(',', comma + 1) != -1) {
             if (context == null || context.showErrors()) {
                 Debug.echoError("DiscordInteractionTag input is not valid.");
             }
             return null;
         }
-        String intIdText = commaSplit.get(1);
-        if (!ArgumentHelper.matchesInteger(intIdText)) {
+        long intId = parseId(string, comma + 1);
+        if (intId == -1) {
             if (context == null || context.showErrors()) {
                 Debug.echoError("DiscordInteractionTag input is not a number.");
             }
             return null;
         }
-        long intId = Long.parseLong(intIdText);
         if (intId == 0) {
             return null;
         }
-        String bot = commaSplit.get(0);
-        DiscordInteractionTag result = interactionCache.get(bot + "_" + intId);
-        if (result != null) {
-            return result;
+        for (DiscordConnection connection : DenizenDiscordBot.instance.connections.values()) {
+            if (connection.botID.length() == comma && string.regionMatches(0, connection.botID, 0, comma)) {
+                return connection.interactions.get(intId);
+            }
         }
         return null;
     }
 
+    /**
+     * Parses the digits from the start index to the end of the string as an ID, or returns -1 if they aren't a valid ID.
+     */
+    public static long parseId(String string, int start) {
+        int length = string.length();
+        if (start >= length || length - start > 19) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = start; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+            if (result < 0) {
+                return -1;
+            }
+        }
+        return result;
+    }
+
     public static boolean matches(String arg) {
         if (arg.startsWith("discordinteraction@")) {
             return true;
@@ -95,34 +110,23 @@ public class DiscordInteractionTag implements ObjectTag, FlaggableObject, Adjust
         return ArgumentHelper.matchesInteger(arg.substring(comma + 1));
     }
 
-    public static Map<String, DiscordInteractionTag> interactionCache = new HashMap<String, DiscordInteractionTag>() {
-        @Override
-        public DiscordInteractionTag put(String key, DiscordInteractionTag value) {
-            DenizenCore.schedule(new OneTimeSchedulable(() -> {
-                value.interaction = null;
-                remove(key);
-            }, 15 * 60));
-            return super.put(key, value);
-        }
-    };
-
     public static DiscordInteractionTag getOrCreate(String bot, Interaction interaction) {
-        DiscordInteractionTag result = interactionCache.get(bot + "_" + interaction.getIdLong());
+        DiscordConnection connection = DenizenDiscordBot.instance.connections.get(bot);
+        DiscordInteractionTag result = connection == null ? null : connection.interactions.get(interaction.getIdLong());
         if (result != null) {
             return result;
         }
         return new DiscordInteractionTag(bot, interaction);
     }
 
-    public String cacheId() {
-        return bot + "_" + interaction_id;
-    }
-
     public DiscordInteractionTag(String bot, Interaction interaction) {
         this.bot = bot;
         this.interaction = interaction;
         this.interaction_id = interaction.getIdLong();
-        DiscordInteractionTag.interactionCache.put(cacheId(), this);
+        DiscordConnection connection = getBot();
+        if (connection != null) {
+            connection.interactions.add(this);
+        }
     }
 
     public DiscordConnection getBot() {
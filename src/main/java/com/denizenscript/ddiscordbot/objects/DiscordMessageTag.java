@@ -2,10 +2,10 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
 import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
-import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
@@ -16,6 +16,7 @@ import com.denizenscript.denizencore.utilities.AsciiMatcher;
 import com.denizenscript.denizencore.utilities.CoreUtilities;
 import net.dv8tion.jda.api.entities.*;
 import net.dv8tion.jda.api.entities.channel.Channel;
+import net.dv8tion.jda.api.entities.channel.concrete.NewsChannel;
 import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 
@@ -163,7 +164,7 @@ public class DiscordMessageTag implements ObjectTag, FlaggableObject, Adjustable
 
     @Override
     public AbstractFlagTracker getFlagTracker() {
-        return new RedirectionFlagTracker(getBot().flags, "__messages." + channel_id + "." + message_id);
+        return getBot().getFlagTracker(DiscordFlagStore.Namespace.MESSAGES, channel_id, message_id);
     }
 
     @Override
@@ -445,9 +446,13 @@ public class DiscordMessageTag implements ObjectTag, FlaggableObject, Adjustable
         // Deletes the message.
         // -->
         tagProcessor.registerMechanism("delete", false, (object, mechanism) -> {
-            Message message = object.getMessage();
+            MessageChannel channel = object.getChannel();
+            if (channel == null) {
+                mechanism.echoError("Cannot delete message: unknown channel.");
+                return;
+            }
             try {
-                message.delete().submit();
+                channel.deleteMessageById(object.message_id).submit();
             }
             catch (Throwable ex) {
                 mechanism.echoError("Failed to delete message: " + ex.getClass().getCanonicalName() + ": " + ex.getMessage());
@@ -463,9 +468,13 @@ public class DiscordMessageTag implements ObjectTag, FlaggableObject, Adjustable
         // Crossposts the message, ie publishes a message in an announcement channel.
         // -->
         tagProcessor.registerMechanism("crosspost", false, (object, mechanism) -> {
-            Message message = object.getMessage();
+            MessageChannel channel = object.getChannel();
+            if (!(channel instanceof NewsChannel newsChannel)) {
+                mechanism.echoError("Cannot crosspost message: it is not in an announcement channel.");
+                return;
+            }
             try {
-                message.crosspost().submit();
+                newsChannel.crosspostMessageById(object.message_id).submit();
             }
             catch (Throwable ex) {
                 mechanism.echoError("Failed to crosspost message: " + ex.getClass().getCanonicalName() + ": " + ex.getMessage());
@@ -2,11 +2,11 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
 import com.denizenscript.ddiscordbot.DiscordConnection;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
-import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
 import com.denizenscript.denizencore.tags.Attribute;
@@ -101,7 +101,7 @@ public class DiscordReactionTag implements ObjectTag, FlaggableObject, Adjustabl
         this.channel_id = channel_id;
         this.message_id = message_id;
         if (ArgumentHelper.matchesInteger(reaction)) {
-            this.emoji = Emoji.fromCustom(getBot().client.getEmojiById(Long.parseLong(reaction)));
+            this.emoji = Emoji.fromCustom(getBot().fromShards(shard -> shard.getEmojiById(Long.parseLong(reaction))));
         }
         else {
             this.emoji = Emoji.fromUnicode(reaction);
@@ -185,7 +185,7 @@ public class DiscordReactionTag implements ObjectTag, FlaggableObject, Adjustabl
 
     @Override
     public AbstractFlagTracker getFlagTracker() {
-        return new RedirectionFlagTracker(getBot().flags, "__reactions." + channel_id + "." + message_id + "." + getId());
+        return getBot().getFlagTracker(DiscordFlagStore.Namespace.REACTIONS, message_id, "__reactions." + channel_id + "." + message_id + "." + getId());
     }
 
     @Override
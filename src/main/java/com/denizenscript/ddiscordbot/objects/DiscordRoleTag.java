@@ -2,11 +2,11 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DiscordConnection;
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
 import com.denizenscript.denizencore.objects.core.ColorTag;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
-import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
@@ -131,7 +131,7 @@ public class DiscordRoleTag implements ObjectTag, FlaggableObject, Adjustable {
         if (bot != null) {
             DiscordConnection conn = DenizenDiscordBot.instance.connections.get(bot);
             if (conn != null) {
-                role = conn.client.getRoleById(role_id);
+                role = conn.fromShards(shard -> shard.getRoleById(roleId));
             }
         }
     }
@@ -153,7 +153,7 @@ public class DiscordRoleTag implements ObjectTag, FlaggableObject, Adjustable {
 
     @Override
     public AbstractFlagTracker getFlagTracker() {
-        return new RedirectionFlagTracker(DenizenDiscordBot.instance.connections.get(bot).flags, "__roles." + guild_id + "." + role_id);
+        return DenizenDiscordBot.instance.connections.get(bot).getFlagTracker(DiscordFlagStore.Namespace.ROLES, guild_id, role_id);
     }
 
     @Override
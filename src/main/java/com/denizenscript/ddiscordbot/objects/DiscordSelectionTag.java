@@ -143,6 +143,19 @@ public class DiscordSelectionTag implements ObjectTag {
 
     public MapTag menuData;
 
+    /**
+     * The built menu, cached as menu data is never changed after the tag is created ('with' tags return a copy).
+     */
+    public SelectMenu cachedMenu;
+
+    public SelectMenu getBuiltMenu(TagContext context) {
+        if (cachedMenu == null) {
+            SelectMenu.Builder builder = build(context);
+            cachedMenu = builder == null ? null : builder.build();
+        }
+        return cachedMenu;
+    }
+
     public static HashSet<String> acceptedWithKeys = new HashSet<>(Arrays.asList(
         "id", "options", "placeholder"
     ));
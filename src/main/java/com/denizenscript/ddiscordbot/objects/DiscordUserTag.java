@@ -2,10 +2,10 @@ package com.denizenscript.ddiscordbot.objects;
 
 import com.denizenscript.ddiscordbot.DiscordConnection;
 import com.denizenscript.ddiscordbot.DenizenDiscordBot;
+import com.denizenscript.ddiscordbot.DiscordFlagStore;
 import com.denizenscript.denizencore.utilities.debugging.Debug;
 import com.denizenscript.denizencore.flags.AbstractFlagTracker;
 import com.denizenscript.denizencore.flags.FlaggableObject;
-import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
 import com.denizenscript.denizencore.objects.*;
 import com.denizenscript.denizencore.objects.core.ElementTag;
 import com.denizenscript.denizencore.objects.core.ListTag;
@@ -115,10 +115,39 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
         if (botObject.client == null) {
             return null;
         }
-        user = botObject.client.getUserById(user_id);
+        user = botObject.getCachedUser(user_id);
         return user;
     }
 
+    /**
+     * Returns the user's member object in the group, if the bot knows it. Never makes a request, see {@link DiscordConnection#getMember}.
+     */
+    public Member getMember(DiscordGroupTag group) {
+        Guild guild = group.getGuild();
+        if (guild == null) {
+            return null;
+        }
+        DiscordConnection connection = group.getBot();
+        if (connection == null) {
+            connection = getBot();
+        }
+        return connection == null ? guild.getMemberById(user_id) : connection.getMember(guild, user_id);
+    }
+
+    public Member getMemberForTag(DiscordGroupTag group, Attribute attribute) {
+        Member member = getMember(group);
+        if (member == null) {
+            Guild guild = group.getGuild();
+            if (guild != null && !guild.isLoaded()) {
+                attribute.echoError("DiscordUserTag failed to get member: they aren't in the bot's member cache. Use '~discordmember fetch' first, or change the bot's 'member_cache' mode.");
+            }
+            else {
+                attribute.echoError("Invalid user! Are they in the Discord Group?");
+            }
+        }
+        return member;
+    }
+
     public User getUserForTag(Attribute attribute) {
         User user = getUser();
         if (user == null) {
@@ -155,7 +184,7 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
 
     @Override
     public AbstractFlagTracker getFlagTracker() {
-        return new RedirectionFlagTracker(getBot().flags, "__users." + user_id);
+        return getBot().getFlagTracker(DiscordFlagStore.Namespace.USERS, 0, user_id);
     }
 
     @Override
@@ -202,13 +231,14 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
         // Returns true if the user exists and is recognized, or false if it can't be seen.
         // If this returns false, some usages of the object may still be valid.
         // It may return false due to caching issues or because the user doesn't share a guild with the bot.
+        // If the bot doesn't cache every member (see the 'member_cache' option of <@link command discordconnect>), use the 'fetch' instruction of <@link command discordmember> first.
         // -->
         tagProcessor.registerTag(ElementTag.class, DiscordGroupTag.class, "is_in_group", (attribute, object, group) -> {
             if (object.getUser() == null) {
                 return new ElementTag(false);
             }
             group = new DiscordGroupTag(object.bot, group.guild_id);
-            Member member = group.getGuild().getMember(object.getUser());
+            Member member = object.getMember(group);
             return new ElementTag(member != null);
         });
 
@@ -275,7 +305,7 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             if (group.bot == null && object.bot != null) {
                 group = new DiscordGroupTag(object.bot, group.guild_id);
             }
-            Member member = group.getGuild().getMember(object.getUser());
+            Member member = object.getMemberForTag(group, attribute);
             if (member == null) {
                 return null;
             }
@@ -328,7 +358,11 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             if (object.getUserForTag(attribute) == null) {
                 return null;
             }
-            return new ElementTag(group.getGuild().getMember(object.getUser()).getOnlineStatus().getKey());
+            Member member = object.getMemberForTag(group, attribute);
+            if (member == null) {
+                return null;
+            }
+            return new ElementTag(member.getOnlineStatus().getKey());
         });
 
         // <--[tag]
@@ -351,7 +385,11 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             if (object.getUserForTag(attribute) == null) {
                 return null;
             }
-            List<Activity> activities = group.getGuild().getMember(object.getUser()).getActivities();
+            Member member = object.getMemberForTag(group, attribute);
+            if (member == null) {
+                return null;
+            }
+            List<Activity> activities = member.getActivities();
             if (activities.isEmpty()) {
                 return null;
             }
@@ -377,7 +415,11 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             if (object.getUserForTag(attribute) == null) {
                 return null;
             }
-            List<Activity> activities = group.getGuild().getMember(object.getUser()).getActivities();
+            Member member = object.getMemberForTag(group, attribute);
+            if (member == null) {
+                return null;
+            }
+            List<Activity> activities = member.getActivities();
             if (activities.isEmpty()) {
                 return null;
             }
@@ -403,7 +445,11 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             if (object.getUserForTag(attribute) == null) {
                 return null;
             }
-            List<Activity> activities = group.getGuild().getMember(object.getUser()).getActivities();
+            Member member = object.getMemberForTag(group, attribute);
+            if (member == null) {
+                return null;
+            }
+            List<Activity> activities = member.getActivities();
             if (activities.isEmpty()) {
                 return null;
             }
@@ -426,7 +472,7 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             }
             group = new DiscordGroupTag(object.bot, group.guild_id);
             ListTag list = new ListTag();
-            Member member = group.getGuild().getMember(object.getUser());
+            Member member = object.getMemberForTag(group, attribute);
             if (member == null) {
                 return null;
             }
@@ -454,8 +500,12 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
             if (object.getUserForTag(attribute) == null) {
                 return null;
             }
+            Member member = object.getMemberForTag(group, attribute);
+            if (member == null) {
+                return null;
+            }
             ListTag list = new ListTag();
-            for (Permission perm : group.getGuild().getMember(object.getUser()).getPermissions()) {
+            for (Permission perm : member.getPermissions()) {
                 list.addObject(new ElementTag(perm));
             }
             return list;
@@ -491,10 +541,8 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
         // Returns whether the user is timed out in a certain group.
         // -->
         tagProcessor.registerTag(ElementTag.class, DiscordGroupTag.class, "is_timed_out", (attribute, object, group) -> {
-            Guild guild = group.getGuild();
-            Member member = guild.getMemberById(object.user_id);
+            Member member = object.getMemberForTag(group, attribute);
             if (member == null) {
-                attribute.echoError("Invalid user! Are they in the Discord Group?");
                 return null;
             }
             return new ElementTag(member.isTimedOut());
@@ -520,9 +568,10 @@ public class DiscordUserTag implements ObjectTag, FlaggableObject, Adjustable {
                 mechanism.echoError("Input must be a voice channel!");
                 return;
             }
-            Member member = guildChannel.getGuild().getMember(object.getUser());
+            DiscordConnection connection = object.getBot();
+            Member member = connection == null ? guildChannel.getGuild().getMemberById(object.user_id) : connection.getMember(guildChannel.getGuild(), object.user_id);
             if (member == null) {
-                mechanism.echoError("Invalid group member!");
+                mechanism.echoError("Invalid group member! (If they are in the group, they may not be in the bot's member cache: use '~discordmember fetch' first.)");
                 return;
             }
             if (member.getVoiceState() == null || !member.getVoiceState().inAudioChannel()) {
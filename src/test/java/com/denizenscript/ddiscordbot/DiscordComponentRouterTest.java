@@ -0,0 +1,113 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.events.ScriptEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class DiscordComponentRouterTest {
+
+    public static ScriptEvent.ScriptPath path(String id) {
+        ScriptEvent.ScriptPath path = mock(ScriptEvent.ScriptPath.class);
+        path.switches = new HashMap<>();
+        if (id != null) {
+            path.switches.put("id", id);
+        }
+        return path;
+    }
+
+    public DiscordComponentRouter router;
+
+    public ScriptEvent.ScriptPath open, buy, yesNo, regex, any;
+
+    public List<ScriptEvent.ScriptPath> paths;
+
+    @BeforeEach
+    public void setUp() {
+        router = new DiscordComponentRouter("id");
+        open = path("shop_open");
+        buy = path("shop_buy_*");
+        yesNo = path("yes|no");
+        regex = path("regex:shop_.*");
+        any = path(null);
+        paths = new ArrayList<>(List.of(open, buy, yesNo, regex, any));
+    }
+
+    @Test
+    public void onlySimpleSwitchesAreRouted() {
+        router.route(paths, "shop_open");
+        assertTrue(router.isRouted(open));
+        assertTrue(router.isRouted(buy));
+        assertTrue(router.isRouted(yesNo));
+        assertFalse(router.isRouted(regex));
+        assertFalse(router.isRouted(any));
+        assertFalse(DiscordComponentRouter.isRoutable("*"));
+        assertFalse(DiscordComponentRouter.isRoutable("a*b"));
+        assertFalse(DiscordComponentRouter.isRoutable(""));
+    }
+
+    @Test
+    public void routesExactIdsAndPrefixes() {
+        router.route(paths, "shop_open");
+        assertTrue(router.allows(open));
+        assertFalse(router.allows(buy));
+        router.route(paths, "shop_buy_sword");
+        assertTrue(router.allows(buy));
+        assertFalse(router.allows(open));
+        router.route(paths, "shop_buy_");
+        assertTrue(router.allows(buy));
+        router.route(paths, "no");
+        assertTrue(router.allows(yesNo));
+        assertFalse(router.allows(open));
+    }
+
+    @Test
+    public void idsAreFoldedLikeTheSwitchMatcher() {
+        router.route(paths, "SHOP_Open");
+        assertTrue(router.allows(open));
+        router.route(paths, "Shop_Buy_Axe");
+        assertTrue(router.allows(buy));
+    }
+
+    @Test
+    public void countsMissesAndFullMatches() {
+        router.route(paths, "unknown");
+        router.route(paths, null);
+        assertEquals(1, router.misses);
+        router.route(paths, "shop_open");
+        router.countMatch(open);
+        // Not a candidate for this ID, so not counted.
+        router.countMatch(buy);
+        for (DiscordComponentRouter.Route route : router.routes) {
+            assertEquals(route.key.equals("shop_open") && !route.prefix ? 1 : 0, route.hits, route.key);
+        }
+    }
+
+    @Test
+    public void rebuildsWhenThePathListIsRefilledInPlace() {
+        router.route(paths, "shop_open");
+        assertTrue(router.allows(open));
+        // Denizen reloads by refilling the same list, so the list and its size can be unchanged.
+        ScriptEvent.ScriptPath renamed = path("shop_close");
+        paths.set(0, renamed);
+        router.route(paths, "shop_close");
+        assertTrue(router.isRouted(renamed));
+        assertTrue(router.allows(renamed));
+        assertFalse(router.isRouted(open));
+    }
+
+    @Test
+    public void rebuildsAfterInvalidate() {
+        router.route(paths, "shop_open");
+        open.switches.put("id", "shop_start");
+        router.invalidate();
+        router.route(paths, "shop_start");
+        assertTrue(router.allows(open));
+    }
+}
@@ -0,0 +1,83 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.flags.SavableMapFlagTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DiscordFlagExpiryTest {
+
+    public DiscordFlagExpiry expiry;
+
+    public SavableMapFlagTracker flags;
+
+    @BeforeEach
+    public void setUp() {
+        DiscordConnection connection = mock(DiscordConnection.class);
+        flags = mock(SavableMapFlagTracker.class);
+        connection.flags = flags;
+        expiry = new DiscordFlagExpiry(connection);
+    }
+
+    public static DiscordFlagExpiry.Entry entry(long expires, String flag) {
+        return new DiscordFlagExpiry.Entry(expires, DiscordFlagStore.Namespace.MESSAGES, 5, "__messages.1.5", flag);
+    }
+
+    @Test
+    public void dedupesTheSameExpirationPerFlag() {
+        expiry.add(entry(100, "a"));
+        expiry.add(entry(100, "a"));
+        assertEquals(1, expiry.size());
+        assertEquals(1, expiry.queue.size());
+        expiry.add(entry(200, "a"));
+        expiry.add(entry(100, "b"));
+        assertEquals(2, expiry.size());
+        assertEquals(3, expiry.queue.size());
+    }
+
+    @Test
+    public void sweepSkipsEntriesReplacedByALaterExpiration() {
+        long now = System.currentTimeMillis();
+        expiry.add(entry(now - 1000, "a"));
+        expiry.add(entry(now + 60_000, "a"));
+        expiry.sweep();
+        // The stale entry was dropped from the queue without touching the flag.
+        assertEquals(1, expiry.size());
+        assertEquals(1, expiry.queue.size());
+        verify(flags, never()).setFlag(anyString(), any(), any());
+        assertEquals(0, expiry.removed);
+    }
+
+    @Test
+    public void sweepLeavesFlagsThatWereSetAgainWithoutExpiry() {
+        long now = System.currentTimeMillis();
+        expiry.add(entry(now - 1000, "a"));
+        // The mocked tracker reports no expiration, like a flag set again without one.
+        expiry.sweep();
+        assertEquals(0, expiry.size());
+        assertTrue(expiry.queue.isEmpty());
+        verify(flags, never()).setFlag(anyString(), any(), any());
+    }
+
+    @Test
+    public void sweepIsBoundedPerCall() {
+        int max = DiscordFlagExpiry.maxPerSweep;
+        try {
+            DiscordFlagExpiry.maxPerSweep = 2;
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 5; i++) {
+                expiry.add(entry(now - 1000 - i, "flag" + i));
+            }
+            expiry.sweep();
+            assertEquals(3, expiry.size());
+            expiry.sweep();
+            expiry.sweep();
+            assertEquals(0, expiry.size());
+        }
+        finally {
+            DiscordFlagExpiry.maxPerSweep = max;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.denizenscript.ddiscordbot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiscordFlagLogTest {
+
+    @TempDir
+    public File folder;
+
+    public long defaultMinCompactBytes = DiscordFlagLog.minCompactBytes;
+
+    @AfterEach
+    public void tearDown() {
+        DiscordFlagLog.minCompactBytes = defaultMinCompactBytes;
+    }
+
+    public static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String text(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void checksumCoversKeyValueAndRemoval() {
+        int base = DiscordFlagLog.checksum(bytes("a"), bytes("value"));
+        assertEquals(base, DiscordFlagLog.checksum(bytes("a"), bytes("value")));
+        assertNotEquals(base, DiscordFlagLog.checksum(bytes("b"), bytes("value")));
+        assertNotEquals(base, DiscordFlagLog.checksum(bytes("a"), bytes("valuf")));
+        assertNotEquals(DiscordFlagLog.checksum(bytes("a"), null), DiscordFlagLog.checksum(bytes("a"), new byte[0]));
+    }
+
+    @Test
+    public void queuedValuesAreReadableBeforeFlush() throws Exception {
+        DiscordFlagLog log = new DiscordFlagLog(new File(folder, "flags.log"));
+        log.queue("one", bytes("1"));
+        assertTrue(log.hasPending());
+        assertEquals("1", text(log.read("one")));
+        log.queue("one", null);
+        assertNull(log.read("one"));
+        log.close();
+    }
+
+    @Test
+    public void valuesSurviveReopening() throws Exception {
+        File file = new File(folder, "flags.log");
+        DiscordFlagLog log = new DiscordFlagLog(file);
+        log.queue("one", bytes("first"));
+        log.queue("two", bytes("second"));
+        log.flush();
+        assertFalse(log.hasPending());
+        log.queue("one", bytes("changed"));
+        log.queue("two", null);
+        log.queue("three", bytes(""));
+        log.close();
+        DiscordFlagLog reopened = new DiscordFlagLog(file);
+        assertEquals("changed", text(reopened.read("one")));
+        assertNull(reopened.read("two"));
+        assertEquals("", text(reopened.read("three")));
+        assertEquals(2, reopened.index.size());
+        assertEquals(file.length(), reopened.end);
+        reopened.close();
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveValues() throws Exception {
+        DiscordFlagLog.minCompactBytes = 1;
+        File file = new File(folder, "flags.log");
+        DiscordFlagLog log = new DiscordFlagLog(file);
+        log.queue("kept", bytes("x".repeat(100)));
+        log.queue("gone", bytes("y".repeat(100)));
+        log.flush();
+        for (int i = 0; i < 5; i++) {
+            log.queue("kept", bytes("k" + i));
+            log.flush();
+        }
+        log.queue("gone", null);
+        log.flush();
+        assertTrue(log.compactions > 0);
+        assertEquals("k4", text(log.read("kept")));
+        assertNull(log.read("gone"));
+        assertEquals(log.end, file.length());
+        assertFalse(new File(file.getPath() + ".compact").exists());
+        log.close();
+        DiscordFlagLog reopened = new DiscordFlagLog(file);
+        assertEquals("k4", text(reopened.read("kept")));
+        assertNull(reopened.read("gone"));
+        assertEquals(1, reopened.index.size());
+        reopened.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.denizencore.flags.AbstractFlagTracker;
+import com.denizenscript.denizencore.flags.RedirectionFlagTracker;
+import com.denizenscript.denizencore.flags.SavableMapFlagTracker;
+
+/**
+ * A small benchmark of Discord object flag tracker lookups: the cached {@link DiscordConnection#getFlagTracker(DiscordFlagStore.Namespace, long, long)},
+ * against building a new {@link RedirectionFlagTracker} and path string per access as object tags used to.
+ * Only the lookup is measured, not flag reads, as those are the same either way.
+ * Not a unit test, so it isn't run by the build. Run its main method with the test classpath, optionally passing the number of rounds.
+ */
+public class DiscordFlagTrackerBenchmark {
+
+    /**
+     * The number of distinct users looked up in turn, like the authors of recent messages.
+     */
+    public static final int USERS = 500;
+
+    public static final int LOOKUPS_PER_ROUND = 10_000_000;
+
+    public static long sink;
+
+    public static long[] userIds() {
+        long[] ids = new long[USERS];
+        for (int i = 0; i < USERS; i++) {
+            ids[i] = 100000000000000000L + i * 7919L;
+        }
+        return ids;
+    }
+
+    public static long runCached(DiscordConnection connection, long[] ids) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            AbstractFlagTracker tracker = connection.getFlagTracker(DiscordFlagStore.Namespace.USERS, 0, ids[i % USERS]);
+            sink += tracker.hashCode();
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static long runAllocating(DiscordConnection connection, long[] ids) {
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+            AbstractFlagTracker tracker = new RedirectionFlagTracker(connection.flags, "__users." + ids[i % USERS]);
+            sink += tracker.hashCode();
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        DiscordConnection connection = new DiscordConnection();
+        connection.botID = "benchmark";
+        connection.flags = new SavableMapFlagTracker();
+        long[] ids = userIds();
+        // Warm up both paths before measuring, so both are compiled.
+        for (int i = 0; i < 3; i++) {
+            runCached(connection, ids);
+            runAllocating(connection, ids);
+        }
+        long cached = Long.MAX_VALUE, allocating = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            cached = Math.min(cached, runCached(connection, ids));
+            allocating = Math.min(allocating, runAllocating(connection, ids));
+        }
+        System.out.printf("cached:     %.2f ns/lookup%n", cached / (double) LOOKUPS_PER_ROUND);
+        System.out.printf("allocating: %.2f ns/lookup%n", allocating / (double) LOOKUPS_PER_ROUND);
+        System.out.println("(sink " + sink + ")");
+    }
+}
@@ -0,0 +1,89 @@
+package com.denizenscript.ddiscordbot;
+
+import com.denizenscript.ddiscordbot.objects.DiscordInteractionTag;
+import net.dv8tion.jda.api.interactions.Interaction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class DiscordInteractionCacheTest {
+
+    public static DiscordInteractionTag interaction(long id) {
+        DiscordInteractionTag tag = mock(DiscordInteractionTag.class);
+        tag.interaction_id = id;
+        tag.interaction = mock(Interaction.class);
+        return tag;
+    }
+
+    public static void tick(DiscordInteractionCache cache, long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            cache.tick();
+        }
+    }
+
+    @Test
+    public void wheelCoversTheExpiryTime() {
+        assertTrue(DiscordInteractionCache.WHEEL_SIZE > DiscordInteractionCache.EXPIRE_TICKS);
+    }
+
+    @Test
+    public void expiresExactlyOnTheDueTick() {
+        DiscordInteractionCache cache = new DiscordInteractionCache();
+        DiscordInteractionTag tag = interaction(1);
+        cache.add(tag);
+        assertSame(tag, cache.get(1));
+        tick(cache, DiscordInteractionCache.EXPIRE_TICKS - 1);
+        assertSame(tag, cache.get(1));
+        assertNotNull(tag.interaction);
+        cache.tick();
+        assertNull(cache.get(1));
+        assertNull(tag.interaction);
+        assertEquals(1, cache.expired);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void entriesAddedLaterExpireLater() {
+        DiscordInteractionCache cache = new DiscordInteractionCache();
+        cache.add(interaction(1));
+        tick(cache, 10);
+        cache.add(interaction(2));
+        tick(cache, DiscordInteractionCache.EXPIRE_TICKS - 10);
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        tick(cache, 10);
+        assertNull(cache.get(2));
+        assertEquals(2, cache.expired);
+    }
+
+    @Test
+    public void entriesDueOnALaterLapAreKept() {
+        DiscordInteractionCache cache = new DiscordInteractionCache();
+        DiscordInteractionTag tag = interaction(1);
+        // Expiry two laps away shares its slot with earlier ticks, and must survive them.
+        long expireTick = cache.currentTick + DiscordInteractionCache.WHEEL_SIZE * 2L;
+        cache.interactions.put(tag.interaction_id, tag);
+        cache.wheel[(int) (expireTick % DiscordInteractionCache.WHEEL_SIZE)].add(new DiscordInteractionCache.Entry(tag, expireTick));
+        tick(cache, DiscordInteractionCache.WHEEL_SIZE * 2L - 1);
+        assertSame(tag, cache.get(1));
+        cache.tick();
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void replacedEntriesAreNotExpiredByTheOldSlot() {
+        DiscordInteractionCache cache = new DiscordInteractionCache();
+        DiscordInteractionTag first = interaction(1);
+        cache.add(first);
+        tick(cache, 5);
+        DiscordInteractionTag second = interaction(1);
+        cache.add(second);
+        tick(cache, DiscordInteractionCache.EXPIRE_TICKS - 5);
+        // The first entry's slot came due, but the ID now maps to the second tag.
+        assertSame(second, cache.get(1));
+        assertNotNull(second.interaction);
+        tick(cache, 5);
+        assertNull(cache.get(1));
+    }
+}
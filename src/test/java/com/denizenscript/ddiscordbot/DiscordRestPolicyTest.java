@@ -0,0 +1,135 @@
+package com.denizenscript.ddiscordbot;
+
+import net.dv8tion.jda.api.requests.RestAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DiscordRestPolicyTest {
+
+    public int defaultAttempts = DiscordRestPolicy.retryAttempts, defaultThreshold = DiscordRestPolicy.breakerThreshold;
+
+    public long defaultBaseDelay = DiscordRestPolicy.retryBaseDelayMillis, defaultOpenMillis = DiscordRestPolicy.breakerOpenMillis;
+
+    public DiscordRestPolicy policy;
+
+    @BeforeEach
+    public void setUp() {
+        DiscordRestPolicy.retryBaseDelayMillis = 0;
+        DiscordRestPolicy.breakerThreshold = 3;
+        DiscordRestPolicy.breakerOpenMillis = 60_000;
+        DiscordConnection connection = mock(DiscordConnection.class);
+        connection.botID = "testbot";
+        policy = new DiscordRestPolicy(connection);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DiscordRestPolicy.retryAttempts = defaultAttempts;
+        DiscordRestPolicy.retryBaseDelayMillis = defaultBaseDelay;
+        DiscordRestPolicy.breakerThreshold = defaultThreshold;
+        DiscordRestPolicy.breakerOpenMillis = defaultOpenMillis;
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public static RestAction<String> action(CompletableFuture<String>... results) {
+        RestAction<String> action = mock(RestAction.class);
+        var stubbing = when(action.submit());
+        for (CompletableFuture<String> result : results) {
+            stubbing = stubbing.thenReturn(result);
+        }
+        return action;
+    }
+
+    @Test
+    public void classifiesFailures() {
+        assertTrue(DiscordRestPolicy.isRetryable(new TimeoutException()));
+        assertTrue(DiscordRestPolicy.isRetryable(new IOException()));
+        assertFalse(DiscordRestPolicy.isRetryable(new IllegalStateException()));
+        assertTrue(DiscordRestPolicy.isTransient(new IOException()));
+        assertFalse(DiscordRestPolicy.isTransient(new IllegalArgumentException()));
+        IOException cause = new IOException();
+        assertSame(cause, DiscordRestPolicy.unwrap(new CompletionException(new CompletionException(cause))));
+    }
+
+    @Test
+    public void breakerOpensAfterThresholdAndHalfOpensAfterDelay() {
+        for (int i = 0; i < 2; i++) {
+            policy.recordTransientFailure();
+            assertEquals(DiscordRestPolicy.State.CLOSED, policy.getState());
+        }
+        policy.recordTransientFailure();
+        assertEquals(DiscordRestPolicy.State.OPEN, policy.getState());
+        assertEquals(1, policy.trips);
+        assertFalse(policy.allowRequest());
+        policy.openedAt -= DiscordRestPolicy.breakerOpenMillis;
+        assertEquals(DiscordRestPolicy.State.HALF_OPEN, policy.getState());
+        // Only a single trial request is let through while half-open.
+        assertTrue(policy.allowRequest());
+        assertFalse(policy.allowRequest());
+    }
+
+    @Test
+    public void failedTrialReopensAndSuccessfulTrialCloses() {
+        DiscordRestPolicy.breakerThreshold = 1;
+        policy.recordTransientFailure();
+        policy.openedAt -= DiscordRestPolicy.breakerOpenMillis;
+        assertTrue(policy.allowRequest());
+        policy.recordTransientFailure();
+        assertEquals(DiscordRestPolicy.State.OPEN, policy.getState());
+        assertEquals(2, policy.trips);
+        policy.openedAt -= DiscordRestPolicy.breakerOpenMillis;
+        assertTrue(policy.allowRequest());
+        policy.recordReachable();
+        assertEquals(DiscordRestPolicy.State.CLOSED, policy.getState());
+        assertEquals(0, policy.consecutiveFailures);
+    }
+
+    @Test
+    public void retriesIdempotentActionsAfterTimeouts() throws Exception {
+        RestAction<String> action = action(CompletableFuture.failedFuture(new TimeoutException()), CompletableFuture.completedFuture("done"));
+        assertEquals("done", policy.submit(action, true).get(5, TimeUnit.SECONDS));
+        verify(action, times(2)).submit();
+        assertEquals(1, policy.retries);
+        assertEquals(DiscordRestPolicy.State.CLOSED, policy.getState());
+    }
+
+    @Test
+    public void doesNotRetryNonIdempotentActions() {
+        RestAction<String> action = action(CompletableFuture.failedFuture(new TimeoutException()), CompletableFuture.completedFuture("done"));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> policy.submit(action, false).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        verify(action, times(1)).submit();
+    }
+
+    @Test
+    public void requestErrorsCountAsReachable() {
+        policy.recordTransientFailure();
+        RestAction<String> action = action(CompletableFuture.failedFuture(new IllegalArgumentException()));
+        assertThrows(ExecutionException.class, () -> policy.submit(action, true).get(5, TimeUnit.SECONDS));
+        verify(action, times(1)).submit();
+        assertEquals(0, policy.consecutiveFailures);
+    }
+
+    @Test
+    public void failsFastWhileOpen() {
+        DiscordRestPolicy.breakerThreshold = 1;
+        policy.recordTransientFailure();
+        RestAction<String> action = action(CompletableFuture.completedFuture("done"));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> policy.submit(action, true).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        verify(action, never()).submit();
+        assertEquals(1, policy.fastFails);
+    }
+}
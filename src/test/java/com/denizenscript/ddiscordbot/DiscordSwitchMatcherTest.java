@@ -0,0 +1,68 @@
+package com.denizenscript.ddiscordbot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiscordSwitchMatcherTest {
+
+    @Test
+    public void parseIdAcceptsOnlyDigits() {
+        assertEquals(1234567890123456789L, DiscordSwitchMatcher.parseId("1234567890123456789"));
+        assertEquals(0, DiscordSwitchMatcher.parseId("0"));
+        assertEquals(-1, DiscordSwitchMatcher.parseId(""));
+        assertEquals(-1, DiscordSwitchMatcher.parseId("12a"));
+        assertEquals(-1, DiscordSwitchMatcher.parseId("-5"));
+        // Too long, or overflowing a long.
+        assertEquals(-1, DiscordSwitchMatcher.parseId("12345678901234567890"));
+        assertEquals(-1, DiscordSwitchMatcher.parseId("9999999999999999999"));
+    }
+
+    @Test
+    public void isPlainRejectsMatcherSyntax() {
+        assertTrue(DiscordSwitchMatcher.isPlain("general"));
+        assertTrue(DiscordSwitchMatcher.isPlain("123"));
+        assertFalse(DiscordSwitchMatcher.isPlain("gen*"));
+        assertFalse(DiscordSwitchMatcher.isPlain("a|b"));
+        assertFalse(DiscordSwitchMatcher.isPlain("!general"));
+        assertFalse(DiscordSwitchMatcher.isPlain("Regex:.*"));
+    }
+
+    @Test
+    public void plainValuesMatchIgnoringCase() {
+        DiscordSwitchMatcher matcher = new DiscordSwitchMatcher("General");
+        assertTrue(matcher.plain);
+        assertEquals(-1, matcher.id);
+        assertTrue(matcher.matches("general"));
+        assertTrue(matcher.matches("GENERAL"));
+        assertFalse(matcher.matches("generals"));
+        assertFalse(matcher.matches(null));
+        assertTrue(matcher.matchesLower("general"));
+        assertFalse(matcher.matchesLower("General"));
+    }
+
+    @Test
+    public void idValuesMatchByNumberOrName() {
+        DiscordSwitchMatcher matcher = new DiscordSwitchMatcher("42");
+        assertEquals(42, matcher.id);
+        assertTrue(matcher.matchesId(42));
+        assertFalse(matcher.matchesId(43));
+        assertTrue(matcher.matchesIdOrName(42, "anything"));
+        assertTrue(matcher.matchesIdOrName(7, "42"));
+        assertFalse(matcher.matchesIdOrName(7, "other"));
+    }
+
+    @Test
+    public void lowerNameCacheFollowsRenames() {
+        String name = "Lobby";
+        assertEquals("lobby", DiscordSwitchMatcher.lowerName(5, name));
+        assertSame(DiscordSwitchMatcher.lowerName(5, name), DiscordSwitchMatcher.lowerName(5, name));
+        // A new name string for the same ID isn't served from the cache.
+        assertEquals("hall", DiscordSwitchMatcher.lowerName(5, "Hall"));
+        // Two IDs sharing a slot don't see each other's names.
+        long other = 5 + DiscordSwitchMatcher.NAME_CACHE_SIZE;
+        assertEquals("lobby", DiscordSwitchMatcher.lowerName(5, name));
+        assertEquals("annex", DiscordSwitchMatcher.lowerName(other, "Annex"));
+        assertEquals("lobby", DiscordSwitchMatcher.lowerName(5, name));
+    }
+}